@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to resolve a batch of zip codes into addresses, one {@link ZipcodeDataServer#fillCityState}
+ * call at a time and through the batch forms with string and numeric zip codes, on one thread and
+ * in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchLookupBenchmark {
+
+  @Param({ "10000" })
+  int               size;
+
+  ZipcodeDataServer server;
+  String[]          zipcodes;
+  int[]             numbers;
+  Address[]         addresses;
+  Random            random;
+
+  /**
+   * Picks the zip codes of the batch, weighted by population, and the addresses to fill.
+   */
+  @Setup
+  public void setup() {
+
+    server = ZipcodeDataServer.instance();
+    random = new Random(1);
+    zipcodes = new String[size];
+    numbers = new int[size];
+    addresses = new Address[size];
+    for (var i = 0; i < size; i++) {
+      zipcodes[i] = server.sampleZipcode(random).getZipcode();
+      numbers[i] = Integer.parseInt(zipcodes[i]);
+      addresses[i] = new Address();
+    }
+  }
+
+  /**
+   * Fills the addresses one lookup at a time.
+   */
+  @Benchmark
+  public int single() {
+
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (server.fillCityState(zipcodes[i], addresses[i], random)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Fills the addresses from string zip codes in one batch.
+   */
+  @Benchmark
+  public int batch() {
+
+    return server.fillCityStates(zipcodes, addresses, random);
+  }
+
+  /**
+   * Fills the addresses from numeric zip codes in one batch.
+   */
+  @Benchmark
+  public int batchNumeric() {
+
+    return server.fillCityStates(numbers, addresses, random);
+  }
+
+  /**
+   * Fills the addresses from numeric zip codes in parallel.
+   */
+  @Benchmark
+  public int batchParallel() {
+
+    return server.fillCityStatesParallel(numbers, addresses, 1);
+  }
+}
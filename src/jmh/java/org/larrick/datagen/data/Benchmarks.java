@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the data package benchmarks and writes the results as JSON. The lookup benchmarks run once
+ * for each thread count from 1 up to the number of processors, doubling each time; all other
+ * benchmarks run single-threaded.
+ */
+public final class Benchmarks {
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private Benchmarks() {}
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param  args            the output directory; {@code target/jmh} if not given
+   *
+   * @throws RunnerException if a benchmark fails
+   */
+  public static void main(String[] args) throws RunnerException {
+
+    var output = new File(args.length > 0 ? args[0] : "target/jmh");
+    output.mkdirs();
+
+    var lookups = ZipcodeLookupBenchmark.class.getName();
+    var single = new OptionsBuilder().include(Benchmarks.class.getPackageName()).exclude(lookups)
+        .threads(1).resultFormat(ResultFormatType.JSON)
+        .result(new File(output, "single-threaded.json").getPath()).build();
+    new Runner(single).run();
+
+    var counts = new ArrayList<Integer>();
+    var processors = Runtime.getRuntime().availableProcessors();
+    for (var threads = 1; threads < processors; threads *= 2) {
+      counts.add(threads);
+    }
+    counts.add(processors);
+
+    for (var threads : counts) {
+      var options = new OptionsBuilder().include(lookups).threads(threads)
+          .resultFormat(ResultFormatType.JSON)
+          .result(new File(output, "lookups-" + threads + "-threads.json").getPath()).build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to stream a {@link People} collection as CSV without compression, through the JDK's
+ * {@link GZIPOutputStream}, and through {@link BlockGzipOutputStream} on one thread and on all
+ * available processors. The parallel case compresses on a pool created once per trial, so the
+ * measurement covers compression rather than thread start-up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+  @Param({ "10000" })
+  int          count;
+
+  People       people;
+  ForkJoinPool pool;
+
+  /**
+   * Builds the people to serialize and the compression pool.
+   */
+  @Setup
+  public void setup() {
+
+    var server = ZipcodeDataServer.instance();
+    var random = new Random(1);
+    people = new People(count);
+    for (var i = 0; i < count; i++) {
+      people.add(PeopleSerializationBenchmark.person(server, random, i));
+    }
+    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Shuts down the compression pool.
+   */
+  @TearDown
+  public void tearDown() {
+
+    pool.shutdownNow();
+  }
+
+  /**
+   * Streams the people as uncompressed CSV.
+   */
+  @Benchmark
+  public void uncompressed() throws IOException {
+
+    write(OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Streams the people as CSV through a single gzip stream.
+   */
+  @Benchmark
+  public void gzip() throws IOException {
+
+    write(new GZIPOutputStream(OutputStream.nullOutputStream(), 8192));
+  }
+
+  /**
+   * Streams the people as CSV through block gzip compression on the writing thread.
+   */
+  @Benchmark
+  public void blockGzipSingle() throws IOException {
+
+    write(new BlockGzipOutputStream(OutputStream.nullOutputStream(),
+        Deflater.DEFAULT_COMPRESSION, 1));
+  }
+
+  /**
+   * Streams the people as CSV through block gzip compression on all available processors.
+   */
+  @Benchmark
+  public void blockGzipParallel() throws IOException {
+
+    write(new BlockGzipOutputStream(OutputStream.nullOutputStream(),
+        Deflater.DEFAULT_COMPRESSION, pool));
+  }
+
+  /**
+   * Writes the people as CSV to the given stream and closes it.
+   */
+  private void write(OutputStream out) throws IOException {
+
+    try (var writer = PeopleWriter.csv(out)) {
+      writer.writeAll(people);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the data model conversions: phone number parsing and formatting and the enum label
+ * lookups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataModelBenchmark {
+
+  /*
+   * Not final, so the JIT cannot fold the inputs into constants.
+   */
+  private String      fullPhone  = "(512) 555-0123";
+  private String      localPhone = "555-0123";
+  private PhoneNumber phone      = new PhoneNumber("512", "555", "0123");
+  private String      ethnicity  = "Hispanic";
+  private String      gender     = "Female";
+
+  /**
+   * Parses a phone number with an area code.
+   */
+  @Benchmark
+  public PhoneNumber parsePhone() {
+
+    return PhoneNumber.parse(fullPhone);
+  }
+
+  /**
+   * Parses a phone number without an area code.
+   */
+  @Benchmark
+  public PhoneNumber parseLocalPhone() {
+
+    return PhoneNumber.parse(localPhone);
+  }
+
+  /**
+   * Formats a phone number.
+   */
+  @Benchmark
+  public String formatPhone() {
+
+    return phone.toString();
+  }
+
+  /**
+   * Looks up an ethnicity by label.
+   */
+  @Benchmark
+  public Ethnicity ethnicityOfLabel() {
+
+    return Ethnicity.ofLabel(ethnicity);
+  }
+
+  /**
+   * Looks up a gender by label.
+   */
+  @Benchmark
+  public Gender genderOfLabel() {
+
+    return Gender.ofLabel(gender);
+  }
+}
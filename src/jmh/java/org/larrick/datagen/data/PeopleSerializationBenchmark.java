@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to serialize a {@link People} collection as CSV, JSON and XML, with the streaming
+ * {@link PeopleWriter} and with the whole-object writers of {@link Mappers}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeopleSerializationBenchmark {
+
+  @Param({ "1000" })
+  int          count;
+
+  People       people;
+  ObjectWriter json;
+  ObjectWriter xml;
+
+  /**
+   * Builds the people to serialize and looks up the whole-object writers.
+   */
+  @Setup
+  public void setup() {
+
+    var server = ZipcodeDataServer.instance();
+    var random = new Random(1);
+    people = new People(count);
+    for (var i = 0; i < count; i++) {
+      people.add(person(server, random, i));
+    }
+
+    json = Mappers.jsonWriter(People.class);
+    xml = Mappers.xmlWriter(People.class);
+  }
+
+  /**
+   * Builds a person with addresses and phone numbers drawn from the zip code data.
+   */
+  static Person person(ZipcodeDataServer server, Random random, int index) {
+
+    var person = new Person().setEthnicity(Ethnicity.values()[index % Ethnicity.values().length])
+        .setGender(Gender.values()[index % 2]).setSurname("Surname" + index)
+        .setGivenName("Given" + index).setMiddleInit("M")
+        .setBirthdate(LocalDate.ofEpochDay(random.nextInt(25_000))).setAge(random.nextInt(90))
+        .setSsn(String.format("%03d-%02d-%04d", index % 900, index % 99, index % 9999));
+
+    var home = server.sampleZipcode(random);
+    var work = server.sampleZipcode(random);
+    person.setHome(server.loadCityState(home.getZipcode(), random).setStreet(index + " Main St"));
+    person.setWork(server.loadCityState(work.getZipcode(), random).setStreet(index + " Elm St"));
+    person.setHomePhone(phone(server.getAreaCode(home, random), random));
+    person.setWorkPhone(phone(server.getAreaCode(work, random), random));
+    person.setMobilePhone(phone(server.getAreaCode(home, random), random));
+    return person;
+  }
+
+  /**
+   * Builds a phone number with a random prefix and line number.
+   */
+  private static PhoneNumber phone(String areaCode, Random random) {
+
+    return new PhoneNumber(areaCode, String.valueOf(200 + random.nextInt(800)),
+        String.format("%04d", random.nextInt(10_000)));
+  }
+
+  /**
+   * Streams the people as CSV.
+   */
+  @Benchmark
+  public void writerCsv() throws IOException {
+
+    try (var writer = PeopleWriter.csv(OutputStream.nullOutputStream())) {
+      writer.writeAll(people);
+    }
+  }
+
+  /**
+   * Streams the people as JSON.
+   */
+  @Benchmark
+  public void writerJson() throws IOException {
+
+    try (var writer = PeopleWriter.json(OutputStream.nullOutputStream())) {
+      writer.writeAll(people);
+    }
+  }
+
+  /**
+   * Streams the people as XML.
+   */
+  @Benchmark
+  public void writerXml() throws IOException {
+
+    try (var writer = PeopleWriter.xml(OutputStream.nullOutputStream())) {
+      writer.writeAll(people);
+    }
+  }
+
+  /**
+   * Serializes the whole collection as JSON.
+   */
+  @Benchmark
+  public void mapperJson() throws IOException {
+
+    json.writeValue(OutputStream.nullOutputStream(), people);
+  }
+
+  /**
+   * Serializes the whole collection as XML.
+   */
+  @Benchmark
+  public void mapperXml() throws IOException {
+
+    xml.writeValue(OutputStream.nullOutputStream(), people);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build a ready {@link ZipcodeDataServer}, with all its indexes, from the CSV file with the
+ * byte-level reader and with Jackson, and from a binary snapshot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(3)
+@State(Scope.Benchmark)
+public class ZipcodeLoadBenchmark {
+
+  private File snapshot;
+
+  /**
+   * Builds a snapshot of the current CSV file and points the snapshot loader at it.
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  @Setup
+  public void setup() throws IOException {
+
+    snapshot = File.createTempFile("ZipcodeData", ".snapshot");
+    ZipcodeSnapshot.main(new String[] { snapshot.getPath() });
+    System.setProperty(ZipcodeSnapshot.SNAPSHOT_PROPERTY, snapshot.getPath());
+
+    // the snapshot benchmark would silently time the CSV reader if the snapshot were not used
+    if (ZipcodeSnapshot.load(getClass().getClassLoader()) == null) {
+      throw new IllegalStateException("Snapshot " + snapshot + " cannot be loaded");
+    }
+  }
+
+  /**
+   * Removes the snapshot.
+   */
+  @TearDown
+  public void tearDown() {
+
+    System.clearProperty(ZipcodeSnapshot.SNAPSHOT_PROPERTY);
+    snapshot.delete();
+  }
+
+  /**
+   * Loads the clean records from the CSV file.
+   */
+  @Benchmark
+  public ZipcodeDataServer csv() {
+
+    return ZipcodeDataServer.instanceCsvData();
+  }
+
+  /**
+   * Loads the clean records from the CSV file with the Jackson CSV mapper.
+   */
+  @Benchmark
+  public ZipcodeDataServer jackson() {
+
+    return ZipcodeDataServer.instanceJacksonData();
+  }
+
+  /**
+   * Loads all records from the CSV file.
+   */
+  @Benchmark
+  public ZipcodeDataServer csvAllData() {
+
+    return ZipcodeDataServer.instanceAllData();
+  }
+
+  /**
+   * Loads the clean records from the binary snapshot.
+   */
+  @Benchmark
+  public ZipcodeDataServer snapshot() {
+
+    return ZipcodeDataServer.instanceSnapshotData();
+  }
+}
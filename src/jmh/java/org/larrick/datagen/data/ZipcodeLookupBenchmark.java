@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the {@link ZipcodeDataServer} lookups. Each thread draws from its own seeded
+ * {@link Random} and cycles through a fixed list of zip codes, so the runs at different thread
+ * counts show how the lookups scale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipcodeLookupBenchmark {
+
+  /**
+   * The shared zip code data.
+   */
+  @State(Scope.Benchmark)
+  public static class Data {
+
+    ZipcodeDataServer server;
+    String[]          zipcodes;
+    int[]             numbers;
+
+    /**
+     * Loads the data and picks the zip codes to look up, weighted by population.
+     */
+    @Setup
+    public void setup() {
+
+      server = ZipcodeDataServer.instance();
+      var random = new Random(1);
+      zipcodes = new String[4096];
+      numbers = new int[zipcodes.length];
+      for (var i = 0; i < zipcodes.length; i++) {
+        zipcodes[i] = server.sampleZipcode(random).getZipcode();
+        numbers[i] = ZipcodeDataServer.parseZipcode(zipcodes[i]);
+      }
+    }
+  }
+
+  /**
+   * The per-thread source of randomness and position in the zip code list.
+   */
+  @State(Scope.Thread)
+  public static class Worker {
+
+    Random random;
+    int    next;
+
+    /**
+     * Seeds the thread's source of randomness.
+     */
+    @Setup
+    public void setup() {
+
+      random = new Random(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the next zip code of the list.
+     */
+    String zipcode(Data data) {
+
+      return data.zipcodes[next++ & (data.zipcodes.length - 1)];
+    }
+
+    /**
+     * Returns the next numeric zip code of the list.
+     */
+    int number(Data data) {
+
+      return data.numbers[next++ & (data.numbers.length - 1)];
+    }
+  }
+
+  /**
+   * Looks up a zip code data record.
+   */
+  @Benchmark
+  public ZipcodeData get(Data data, Worker worker) {
+
+    return data.server.get(worker.zipcode(data));
+  }
+
+  /**
+   * Looks up a zip code data record by numeric zip code.
+   */
+  @Benchmark
+  public ZipcodeData getNumeric(Data data, Worker worker) {
+
+    return data.server.get(worker.number(data));
+  }
+
+  /**
+   * Parses a zip code and looks up its record by numeric zip code.
+   */
+  @Benchmark
+  public ZipcodeData getParsed(Data data, Worker worker) {
+
+    return data.server.get(ZipcodeDataServer.parseZipcode(worker.zipcode(data)));
+  }
+
+  /**
+   * Looks up a city for a zip code.
+   */
+  @Benchmark
+  public String getCity(Data data, Worker worker) {
+
+    return data.server.getCity(worker.zipcode(data), worker.random);
+  }
+
+  /**
+   * Looks up a city for a numeric zip code.
+   */
+  @Benchmark
+  public String getCityNumeric(Data data, Worker worker) {
+
+    return data.server.getCity(worker.number(data), worker.random);
+  }
+
+  /**
+   * Looks up an area code for a zip code.
+   */
+  @Benchmark
+  public String getAreaCode(Data data, Worker worker) {
+
+    return data.server.getAreaCode(worker.zipcode(data), worker.random);
+  }
+
+  /**
+   * Builds a city/state address for a zip code.
+   */
+  @Benchmark
+  public Address loadCityState(Data data, Worker worker) {
+
+    return data.server.loadCityState(worker.zipcode(data), worker.random);
+  }
+
+  /**
+   * Draws a population-weighted zip code.
+   */
+  @Benchmark
+  public ZipcodeData sampleZipcode(Data data, Worker worker) {
+
+    return data.server.sampleZipcode(worker.random);
+  }
+}
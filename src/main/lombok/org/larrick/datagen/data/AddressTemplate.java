@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.Random;
+
+/**
+ * Pre-resolved city, state and ZIP code values for a single ZIP code. Templates are built once when
+ * the Zip code data is loaded; filling an {@link Address} from a template does no lookups and
+ * allocates nothing.
+ *
+ * @see ZipcodeDataServer#template(String)
+ */
+public final class AddressTemplate {
+
+  private final String   zipcode;
+  private final String   state;
+  private final boolean  poBox;
+
+  /*
+   * The acceptable cities followed by the base city, in the order used by
+   * ZipcodeDataServer.getCity().
+   */
+  private final String[] cities;
+
+  /**
+   * Builds the template for the given ZIP code record.
+   *
+   * @param record the ZIP code data record
+   */
+  AddressTemplate(ZipcodeData record) {
+
+    zipcode = record.zipcode;
+    state = record.state;
+    poBox = record.poBox;
+
+    var acceptable = record.acceptableCities;
+    var count = (acceptable == null) ? 0 : acceptable.size();
+    cities = new String[count + 1];
+    for (var i = 0; i < count; i++) {
+      cities[i] = acceptable.get(i);
+    }
+    cities[count] = record.city;
+  }
+
+  /**
+   * Returns the ZIP code of the template.
+   *
+   * @return the ZIP code
+   */
+  public String getZipcode() {
+
+    return zipcode;
+  }
+
+  /**
+   * Returns the state of the template.
+   *
+   * @return the state
+   */
+  public String getState() {
+
+    return state;
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the ZIP code is for PO Boxes.
+   *
+   * @return <b>{@code true}</b> if a PO Box ZIP code
+   */
+  public boolean isPoBox() {
+
+    return poBox;
+  }
+
+  /**
+   * Returns a city for the ZIP code, chosen at random among the city and acceptable cities.
+   *
+   * @param  random the source of randomness
+   *
+   * @return        a city value
+   */
+  public String getCity(Random random) {
+
+    return (cities.length == 1) ? cities[0] : cities[random.nextInt(cities.length)];
+  }
+
+  /**
+   * Sets the city, state, ZIP code and PO Box values of the given address. The street is left
+   * unchanged.
+   *
+   * @param  address the address to fill
+   * @param  random  the source of randomness used to choose the city
+   *
+   * @return         the given address
+   */
+  public Address fill(Address address, Random random) {
+
+    address.city = getCity(random);
+    address.state = state;
+    address.zipcode = zipcode;
+    address.poBox = poBox;
+    return address;
+  }
+}
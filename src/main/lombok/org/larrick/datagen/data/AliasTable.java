@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.Random;
+
+/**
+ * Walker/Vose alias table for drawing weighted random indexes in constant time. The table is built
+ * once from a set of non-negative weights; each draw then costs two random numbers and two array
+ * loads, and allocates nothing.
+ */
+final class AliasTable {
+
+  /**
+   * Probability of keeping the column selected by the first draw.
+   */
+  private final double[] prob;
+
+  /**
+   * Alternate index returned when the column is not kept.
+   */
+  private final int[]    alias;
+
+  /**
+   * Builds an alias table for the given weights. Weights of zero are never drawn.
+   *
+   * @param  weights                  the weight of each index
+   *
+   * @throws IllegalArgumentException if a weight is negative or all weights are zero
+   */
+  AliasTable(double[] weights) {
+
+    var size = weights.length;
+    var total = 0.0;
+    for (var w : weights) {
+      if (w < 0) {
+        throw new IllegalArgumentException("Negative weight: " + w);
+      }
+      total += w;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("No positive weights");
+    }
+
+    prob = new double[size];
+    alias = new int[size];
+
+    // scale the weights so that the average column holds exactly 1.0
+    var scaled = new double[size];
+    var small = new int[size];
+    var large = new int[size];
+    var smallCount = 0;
+    var largeCount = 0;
+    for (var i = 0; i < size; i++) {
+      scaled[i] = weights[i] * size / total;
+      if (scaled[i] < 1.0) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+
+    // fill each under-full column with the excess of an over-full one
+    while (smallCount > 0 && largeCount > 0) {
+      var less = small[--smallCount];
+      var more = large[--largeCount];
+
+      prob[less] = scaled[less];
+      alias[less] = more;
+
+      scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+      if (scaled[more] < 1.0) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+
+    // whatever is left is full, give or take rounding error
+    while (largeCount > 0) {
+      var i = large[--largeCount];
+      prob[i] = 1.0;
+      alias[i] = i;
+    }
+    while (smallCount > 0) {
+      var i = small[--smallCount];
+      prob[i] = 1.0;
+      alias[i] = i;
+    }
+  }
+
+  /**
+   * Returns the number of indexes covered by the table.
+   *
+   * @return the table size
+   */
+  int size() {
+
+    return prob.length;
+  }
+
+  /**
+   * Draws a weighted random index.
+   *
+   * @param  random the source of randomness
+   *
+   * @return        an index between zero (inclusive) and {@link #size()} (exclusive)
+   */
+  int next(Random random) {
+
+    var column = random.nextInt(prob.length);
+    return random.nextDouble() < prob[column] ? column : alias[column];
+  }
+}
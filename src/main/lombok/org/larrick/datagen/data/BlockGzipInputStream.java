@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that reads the block gzip format written by {@link BlockGzipOutputStream}. The
+ * compressed size in each block header lets the stream read ahead several blocks and decompress
+ * them in parallel on worker threads, returning the data in order.
+ */
+public final class BlockGzipInputStream extends InputStream {
+
+  private static final byte[] NO_DATA = new byte[0];
+
+  private final InputStream                in;
+  private final ForkJoinPool               pool;
+  private final int                        window;
+  private final ArrayDeque<Future<byte[]>> pending;
+  private byte[]                           block   = NO_DATA;
+  private int                              pos     = 0;
+  private boolean                          eof     = false;
+
+  /**
+   * Constructs a stream that decompresses on all available processors.
+   *
+   * @param in the stream of compressed blocks
+   */
+  public BlockGzipInputStream(InputStream in) {
+
+    this(in, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a stream that decompresses with the given number of threads. With a single thread,
+   * blocks are decompressed on the reading thread.
+   *
+   * @param in      the stream of compressed blocks
+   * @param threads the number of decompression threads
+   */
+  public BlockGzipInputStream(InputStream in, int threads) {
+
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+
+    this.in = in;
+    this.pool = (threads == 1) ? null : new ForkJoinPool(threads);
+    this.window = 2 * threads;
+    this.pending = new ArrayDeque<Future<byte[]>>(window);
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @return             the byte read; -1 at the end of the data
+   *
+   * @throws IOException if a block cannot be read
+   */
+  @Override
+  public int read() throws IOException {
+
+    if (pos == block.length && !nextBlock()) {
+      return -1;
+    }
+    return block[pos++] & 0xff;
+  }
+
+  /**
+   * Reads up to the given number of bytes.
+   *
+   * @param  bytes       the array receiving the data
+   * @param  offset      the start of the range to fill
+   * @param  length      the maximum number of bytes to read
+   *
+   * @return             the number of bytes read; -1 at the end of the data
+   *
+   * @throws IOException if a block cannot be read
+   */
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+
+    if (length == 0) {
+      return 0;
+    }
+    if (pos == block.length && !nextBlock()) {
+      return -1;
+    }
+
+    var n = Math.min(length, block.length - pos);
+    System.arraycopy(block, pos, bytes, offset, n);
+    pos += n;
+    return n;
+  }
+
+  /**
+   * Returns the number of bytes that can be read without blocking.
+   *
+   * @return the number of decompressed bytes left in the current block
+   */
+  @Override
+  public int available() {
+
+    return block.length - pos;
+  }
+
+  /**
+   * Closes the underlying stream and stops the worker threads.
+   *
+   * @throws IOException if the stream cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+
+    try (in) {
+      pending.clear();
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Moves to the next non-empty decompressed block, reading ahead to keep the window full.
+   *
+   * @return             <b>{@code false}</b> at the end of the data
+   *
+   * @throws IOException if a block cannot be read
+   */
+  private boolean nextBlock() throws IOException {
+
+    do {
+      while (!eof && pending.size() < window) {
+        var compressed = readBlock();
+        if (compressed == null) {
+          eof = true;
+        } else if (pool == null) {
+          pending.add(CompletableFuture.completedFuture(decompress(compressed)));
+        } else {
+          pending.add(pool.submit(() -> decompress(compressed)));
+        }
+      }
+      if (pending.isEmpty()) {
+        return false;
+      }
+
+      try {
+        block = pending.poll().get();
+        pos = 0;
+      } catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Decompression interrupted");
+      } catch (ExecutionException exc) {
+        var cause = exc.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Decompression failed", cause);
+      }
+    } while (block.length == 0);
+
+    return true;
+  }
+
+  /**
+   * Reads the next complete block from the underlying stream.
+   *
+   * @return             the compressed block; null at the end of the stream
+   *
+   * @throws IOException if the block is truncated or not in block gzip format
+   */
+  private byte[] readBlock() throws IOException {
+
+    var header = new byte[BlockGzipOutputStream.HEADER];
+    var n = in.readNBytes(header, 0, header.length);
+    if (n == 0) {
+      return null;
+    }
+    if (n < header.length) {
+      throw new EOFException("Truncated block header");
+    }
+    if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8
+        || header[3] != 4 || getShort(header, 10) != 6 || header[12] != 'B' || header[13] != 'C'
+        || getShort(header, 14) != 2) {
+      throw new ZipException("Not a block gzip stream");
+    }
+
+    var size = getShort(header, 16) + 1;
+    var block = new byte[size];
+    System.arraycopy(header, 0, block, 0, header.length);
+    if (in.readNBytes(block, header.length, size - header.length) < size - header.length) {
+      throw new EOFException("Truncated block");
+    }
+    return block;
+  }
+
+  /**
+   * Decompresses a complete gzip block.
+   *
+   * @param  block       the compressed block
+   *
+   * @return             the decompressed data
+   *
+   * @throws IOException if the data is corrupt
+   */
+  static byte[] decompress(byte[] block) throws IOException {
+
+    var trailer = block.length - BlockGzipOutputStream.TRAILER;
+    var length = getInt(block, trailer + 4);
+    if (trailer < BlockGzipOutputStream.HEADER || length < 0
+        || length > BlockGzipOutputStream.BLOCK_SIZE) {
+      throw new ZipException("Corrupt block");
+    }
+
+    var data = new byte[length];
+    var inflater = new Inflater(true);
+    try {
+      inflater.setInput(block, BlockGzipOutputStream.HEADER,
+          trailer - BlockGzipOutputStream.HEADER);
+      var n = 0;
+      while (n < data.length && !inflater.finished()) {
+        var count = inflater.inflate(data, n, data.length - n);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += count;
+      }
+      if (n != data.length) {
+        throw new ZipException("Corrupt block");
+      }
+    } catch (DataFormatException exc) {
+      throw new ZipException(exc.getMessage());
+    } finally {
+      inflater.end();
+    }
+
+    var crc = new CRC32();
+    crc.update(data, 0, data.length);
+    if ((int) crc.getValue() != getInt(block, trailer)) {
+      throw new ZipException("Block checksum mismatch");
+    }
+    return data;
+  }
+
+  /**
+   * Returns a little-endian 16-bit value.
+   *
+   * @param  bytes  the array to read
+   * @param  offset the offset of the value
+   *
+   * @return        the value
+   */
+  private static int getShort(byte[] bytes, int offset) {
+
+    return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+  }
+
+  /**
+   * Returns a little-endian 32-bit value.
+   *
+   * @param  bytes  the array to read
+   * @param  offset the offset of the value
+   *
+   * @return        the value
+   */
+  private static int getInt(byte[] bytes, int offset) {
+
+    return getShort(bytes, offset) | getShort(bytes, offset + 2) << 16;
+  }
+}
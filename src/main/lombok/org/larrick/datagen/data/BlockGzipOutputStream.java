@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that compresses its data in independent gzip blocks. The data is cut into blocks
+ * of at most {@value #BLOCK_SIZE} bytes, which are compressed in parallel on worker threads and
+ * written in order. Each block is a complete gzip member whose header records the compressed size
+ * of the block (the BGZF framing used by genomics tools), so the output:
+ * <ul>
+ * <li>is a valid gzip file that any gzip reader can decompress;</li>
+ * <li>can be split at block boundaries and decompressed in parallel, for example by
+ * {@link BlockGzipInputStream}.</li>
+ * </ul>
+ * The stream ends with an empty block that marks the end of the data.
+ * <p>
+ * Wrap the output of a {@link PeopleWriter} to compress it:
+ *
+ * <pre>
+ * try (var writer = PeopleWriter.csv(new BlockGzipOutputStream(out))) {
+ *   writer.writeAll(people);
+ * }
+ * </pre>
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+
+  /**
+   * The maximum number of uncompressed bytes in a block.
+   */
+  public static final int  BLOCK_SIZE = 0xff00;
+
+  static final int         MAX_BLOCK  = 0x10000;
+  static final int         HEADER     = 18;
+  static final int         TRAILER    = 8;
+
+  /*
+   * The empty block that ends the stream.
+   */
+  private static final byte[] EOF = { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0,
+      'B', 'C', 2, 0, 0x1b, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+  private final OutputStream               out;
+  private final int                        level;
+  private final ForkJoinPool               pool;
+  private final boolean                    shared;
+  private final int                        window;
+  private final ArrayDeque<Future<byte[]>> pending;
+  private byte[]                           buffer = new byte[BLOCK_SIZE];
+  private int                              count  = 0;
+  private boolean                          closed = false;
+
+  /**
+   * Constructs a stream that compresses with the default level on all available processors.
+   *
+   * @param out the stream receiving the compressed data
+   */
+  public BlockGzipOutputStream(OutputStream out) {
+
+    this(out, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a stream that compresses with the given level and number of threads. With a single
+   * thread, blocks are compressed on the writing thread.
+   *
+   * @param out     the stream receiving the compressed data
+   * @param level   the {@link Deflater} compression level
+   * @param threads the number of compression threads
+   */
+  public BlockGzipOutputStream(OutputStream out, int level, int threads) {
+
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+
+    this.out = out;
+    this.level = level;
+    this.pool = (threads == 1) ? null : new ForkJoinPool(threads);
+    this.shared = false;
+    this.window = 2 * threads;
+    this.pending = new ArrayDeque<Future<byte[]>>(window);
+  }
+
+  /**
+   * Constructs a stream that compresses with the given level on a caller-owned pool. The pool is
+   * not shut down when the stream is closed, so one long-lived pool can serve many streams.
+   *
+   * @param out   the stream receiving the compressed data
+   * @param level the {@link Deflater} compression level
+   * @param pool  the pool that compresses the blocks
+   */
+  public BlockGzipOutputStream(OutputStream out, int level, ForkJoinPool pool) {
+
+    if (pool == null) {
+      throw new IllegalArgumentException("Missing compression pool");
+    }
+
+    this.out = out;
+    this.level = level;
+    this.pool = pool;
+    this.shared = true;
+    this.window = 2 * pool.getParallelism();
+    this.pending = new ArrayDeque<Future<byte[]>>(window);
+  }
+
+  /**
+   * Writes a single byte.
+   *
+   * @param  b           the byte to write
+   *
+   * @throws IOException if a block cannot be written
+   */
+  @Override
+  public void write(int b) throws IOException {
+
+    buffer[count++] = (byte) b;
+    if (count == BLOCK_SIZE) {
+      submit();
+    }
+  }
+
+  /**
+   * Writes a range of bytes.
+   *
+   * @param  bytes       the data
+   * @param  offset      the start of the range
+   * @param  length      the number of bytes to write
+   *
+   * @throws IOException if a block cannot be written
+   */
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+
+    while (length > 0) {
+      var n = Math.min(length, BLOCK_SIZE - count);
+      System.arraycopy(bytes, offset, buffer, count, n);
+      count += n;
+      offset += n;
+      length -= n;
+      if (count == BLOCK_SIZE) {
+        submit();
+      }
+    }
+  }
+
+  /**
+   * Compresses the buffered data as a block, possibly smaller than the block size, and writes all
+   * pending blocks.
+   *
+   * @throws IOException if a block cannot be written
+   */
+  @Override
+  public void flush() throws IOException {
+
+    if (count > 0) {
+      submit();
+    }
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+    out.flush();
+  }
+
+  /**
+   * Writes all remaining data and the end-of-data block, and closes the underlying stream.
+   *
+   * @throws IOException if the data cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try (out) {
+      flush();
+      out.write(EOF);
+    } finally {
+      if (pool != null && !shared) {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Hands the buffered data off for compression, writing the oldest block first if the window of
+   * pending blocks is full.
+   *
+   * @throws IOException if a block cannot be written
+   */
+  private void submit() throws IOException {
+
+    if (pending.size() >= window) {
+      writeNext();
+    }
+
+    var data = buffer;
+    var length = count;
+    if (pool == null) {
+      pending.add(CompletableFuture.completedFuture(compress(data, length, level)));
+    } else {
+      pending.add(pool.submit(() -> compress(data, length, level)));
+      buffer = new byte[BLOCK_SIZE];
+    }
+    count = 0;
+  }
+
+  /**
+   * Waits for the oldest pending block and writes it.
+   *
+   * @throws IOException if the block cannot be compressed or written
+   */
+  private void writeNext() throws IOException {
+
+    try {
+      out.write(pending.poll().get());
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Compression interrupted");
+    } catch (ExecutionException exc) {
+      throw new IOException("Compression failed", exc.getCause());
+    }
+  }
+
+  /**
+   * Compresses data into a complete gzip block.
+   *
+   * @param  data   the data to compress
+   * @param  length the number of bytes to compress
+   * @param  level  the compression level
+   *
+   * @return        the gzip block
+   */
+  static byte[] compress(byte[] data, int length, int level) {
+
+    var block = new byte[MAX_BLOCK];
+    var size = deflate(data, length, level, block);
+    if (size < 0) {
+      // incompressible data; stored blocks always fit
+      size = deflate(data, length, Deflater.NO_COMPRESSION, block);
+    }
+
+    var crc = new CRC32();
+    crc.update(data, 0, length);
+    var total = HEADER + size + TRAILER;
+
+    block[0] = 0x1f;
+    block[1] = (byte) 0x8b;
+    block[2] = 8;                                         // deflate
+    block[3] = 4;                                         // extra field
+    block[9] = (byte) 0xff;                               // unknown OS
+    putShort(block, 10, 6);                               // extra length
+    block[12] = 'B';
+    block[13] = 'C';
+    putShort(block, 14, 2);                               // subfield length
+    putShort(block, 16, total - 1);                       // block size - 1
+    putInt(block, HEADER + size, (int) crc.getValue());
+    putInt(block, HEADER + size + 4, length);
+    return Arrays.copyOf(block, total);
+  }
+
+  /**
+   * Deflates data into the body of a block.
+   *
+   * @param  data   the data to compress
+   * @param  length the number of bytes to compress
+   * @param  level  the compression level
+   * @param  block  the block receiving the compressed data after the header
+   *
+   * @return        the compressed size; -1 if the data does not fit
+   */
+  private static int deflate(byte[] data, int length, int level, byte[] block) {
+
+    var deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+      var size = deflater.deflate(block, HEADER, MAX_BLOCK - HEADER - TRAILER);
+      return deflater.finished() ? size : -1;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Stores a little-endian 16-bit value.
+   *
+   * @param bytes  the array to write
+   * @param offset the offset of the value
+   * @param value  the value to store
+   */
+  private static void putShort(byte[] bytes, int offset, int value) {
+
+    bytes[offset] = (byte) value;
+    bytes[offset + 1] = (byte) (value >>> 8);
+  }
+
+  /**
+   * Stores a little-endian 32-bit value.
+   *
+   * @param bytes  the array to write
+   * @param offset the offset of the value
+   * @param value  the value to store
+   */
+  private static void putInt(byte[] bytes, int offset, int value) {
+
+    putShort(bytes, offset, value);
+    putShort(bytes, offset + 2, value >>> 16);
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.time.LocalDate;
+
+/**
+ * Compact, immutable form of a {@link Person} for holding very large numbers of people in memory.
+ * Repeated string values (names, cities, states and ZIP codes) are stored as codes into a shared
+ * {@link StringDictionary}, the birth date as an epoch day and the phone numbers as
+ * {@link PackedPhoneNumber packed} values. The addresses are flattened into the record, so a
+ * compact person is a single object whose only unshared strings are the SSN and street addresses.
+ * <p>
+ * The {@link Address} and {@link PhoneNumber} objects returned by the getters are built on each
+ * call and are not backed by the record.
+ * <p>
+ * Creating a compact person adds its values to the dictionary, which must be guarded by the caller
+ * if people are converted on more than one thread.
+ */
+public final class CompactPerson {
+
+  /**
+   * The epoch day value of a missing birth date.
+   */
+  public static final int          NO_DATE      = Integer.MIN_VALUE;
+
+  // bits of the flags byte
+  private static final int         HOME_PRESENT = 1;
+  private static final int         HOME_PO_BOX  = 2;
+  private static final int         WORK_PRESENT = 4;
+  private static final int         WORK_PO_BOX  = 8;
+
+  private static final Ethnicity[] ETHNICITIES  = Ethnicity.values();
+  private static final Gender[]    GENDERS      = Gender.values();
+
+  private final StringDictionary dictionary;
+
+  private final byte             ethnicity;
+  private final byte             gender;
+  private final byte             flags;
+  private final int              surname;
+  private final int              givenName;
+  private final int              middleInit;
+  private final int              birthdate;
+  private final int              age;
+  private final String           ssn;
+
+  private final String           homeStreet;
+  private final int              homeCity;
+  private final int              homeState;
+  private final int              homeZipcode;
+
+  private final String           workStreet;
+  private final int              workCity;
+  private final int              workState;
+  private final int              workZipcode;
+
+  private final long             homePhone;
+  private final long             workPhone;
+  private final long             mobilePhone;
+
+  /**
+   * Constructs the compact form of the given person.
+   *
+   * @param person     the person to convert
+   * @param dictionary the dictionary for the string values
+   */
+  private CompactPerson(Person person, StringDictionary dictionary) {
+
+    this.dictionary = dictionary;
+
+    ethnicity = (byte) ((person.ethnicity == null) ? -1 : person.ethnicity.ordinal());
+    gender = (byte) ((person.gender == null) ? -1 : person.gender.ordinal());
+    surname = dictionary.encode(person.surname);
+    givenName = dictionary.encode(person.givenName);
+    middleInit = dictionary.encode(person.middleInit);
+    birthdate = (person.birthdate == null) ? NO_DATE : (int) person.birthdate.toEpochDay();
+    age = person.age;
+    ssn = person.ssn;
+
+    var home = person.home;
+    homeStreet = (home == null) ? null : home.street;
+    homeCity = (home == null) ? -1 : dictionary.encode(home.city);
+    homeState = (home == null) ? -1 : dictionary.encode(home.state);
+    homeZipcode = (home == null) ? -1 : dictionary.encode(home.zipcode);
+
+    var work = person.work;
+    workStreet = (work == null) ? null : work.street;
+    workCity = (work == null) ? -1 : dictionary.encode(work.city);
+    workState = (work == null) ? -1 : dictionary.encode(work.state);
+    workZipcode = (work == null) ? -1 : dictionary.encode(work.zipcode);
+
+    // presence is stored explicitly, so an empty address is not mistaken for a missing one
+    var bits = 0;
+    if (home != null) {
+      bits |= HOME_PRESENT | (home.poBox ? HOME_PO_BOX : 0);
+    }
+    if (work != null) {
+      bits |= WORK_PRESENT | (work.poBox ? WORK_PO_BOX : 0);
+    }
+    flags = (byte) bits;
+
+    homePhone = PackedPhoneNumber.pack(person.homePhone);
+    workPhone = PackedPhoneNumber.pack(person.workPhone);
+    mobilePhone = PackedPhoneNumber.pack(person.mobilePhone);
+  }
+
+  /**
+   * Returns the compact form of the given person.
+   *
+   * @param  person                   the person to convert
+   * @param  dictionary               the shared dictionary for the string values
+   *
+   * @return                          a new compact person
+   *
+   * @throws IllegalArgumentException if a phone number of the person cannot be packed
+   */
+  public static CompactPerson of(Person person, StringDictionary dictionary) {
+
+    return new CompactPerson(person, dictionary);
+  }
+
+  /**
+   * Rebuilds the full {@link Person} object of this record.
+   *
+   * @return a new person equal to the one this record was built from
+   */
+  public Person toPerson() {
+
+    var person = new Person();
+    person.ethnicity = getEthnicity();
+    person.gender = getGender();
+    person.surname = getSurname();
+    person.givenName = getGivenName();
+    person.middleInit = getMiddleInit();
+    person.birthdate = getBirthdate();
+    person.age = age;
+    person.ssn = ssn;
+    person.home = getHome();
+    person.work = getWork();
+    person.homePhone = getHomePhone();
+    person.workPhone = getWorkPhone();
+    person.mobilePhone = getMobilePhone();
+    return person;
+  }
+
+  /**
+   * Returns the dictionary holding the string values of this record.
+   *
+   * @return the string dictionary
+   */
+  public StringDictionary getDictionary() {
+
+    return dictionary;
+  }
+
+  /**
+   * Returns the person's ethnicity.
+   *
+   * @return the ethnicity
+   */
+  public Ethnicity getEthnicity() {
+
+    return (ethnicity < 0) ? null : ETHNICITIES[ethnicity];
+  }
+
+  /**
+   * Returns the person's gender.
+   *
+   * @return the gender
+   */
+  public Gender getGender() {
+
+    return (gender < 0) ? null : GENDERS[gender];
+  }
+
+  /**
+   * Returns the person's surname.
+   *
+   * @return the surname
+   */
+  public String getSurname() {
+
+    return dictionary.decode(surname);
+  }
+
+  /**
+   * Returns the person's given name.
+   *
+   * @return the given name
+   */
+  public String getGivenName() {
+
+    return dictionary.decode(givenName);
+  }
+
+  /**
+   * Returns the person's middle initial.
+   *
+   * @return the middle initial
+   */
+  public String getMiddleInit() {
+
+    return dictionary.decode(middleInit);
+  }
+
+  /**
+   * Returns the person's birth date.
+   *
+   * @return the birth date
+   */
+  public LocalDate getBirthdate() {
+
+    return (birthdate == NO_DATE) ? null : LocalDate.ofEpochDay(birthdate);
+  }
+
+  /**
+   * Returns the person's birth date as an epoch day.
+   *
+   * @return the epoch day of the birth date; {@link #NO_DATE} if none
+   */
+  public int getBirthdateEpochDay() {
+
+    return birthdate;
+  }
+
+  /**
+   * Returns the person's age.
+   *
+   * @return the age
+   */
+  public int getAge() {
+
+    return age;
+  }
+
+  /**
+   * Returns the person's federal ID number.
+   *
+   * @return the social security number
+   */
+  public String getSsn() {
+
+    return ssn;
+  }
+
+  /**
+   * Returns a new copy of the person's home address.
+   *
+   * @return the home address; null if none
+   */
+  public Address getHome() {
+
+    return ((flags & HOME_PRESENT) == 0) ? null
+        : address(homeStreet, homeCity, homeState, homeZipcode, (flags & HOME_PO_BOX) != 0);
+  }
+
+  /**
+   * Returns a new copy of the person's work address.
+   *
+   * @return the work address; null if none
+   */
+  public Address getWork() {
+
+    return ((flags & WORK_PRESENT) == 0) ? null
+        : address(workStreet, workCity, workState, workZipcode, (flags & WORK_PO_BOX) != 0);
+  }
+
+  /**
+   * Returns the state of the person's home address.
+   *
+   * @return the home state
+   */
+  public String getHomeState() {
+
+    return dictionary.decode(homeState);
+  }
+
+  /**
+   * Returns the ZIP code of the person's home address.
+   *
+   * @return the home ZIP code
+   */
+  public String getHomeZipcode() {
+
+    return dictionary.decode(homeZipcode);
+  }
+
+  /**
+   * Returns a new copy of the person's home phone number.
+   *
+   * @return the home phone number
+   */
+  public PhoneNumber getHomePhone() {
+
+    return PackedPhoneNumber.unpack(homePhone);
+  }
+
+  /**
+   * Returns a new copy of the person's work phone number.
+   *
+   * @return the work phone number
+   */
+  public PhoneNumber getWorkPhone() {
+
+    return PackedPhoneNumber.unpack(workPhone);
+  }
+
+  /**
+   * Returns a new copy of the person's mobile phone number.
+   *
+   * @return the mobile phone number
+   */
+  public PhoneNumber getMobilePhone() {
+
+    return PackedPhoneNumber.unpack(mobilePhone);
+  }
+
+  /**
+   * Returns the packed form of the person's home phone number.
+   *
+   * @return the packed home phone number
+   */
+  public long getPackedHomePhone() {
+
+    return homePhone;
+  }
+
+  /**
+   * Returns the packed form of the person's work phone number.
+   *
+   * @return the packed work phone number
+   */
+  public long getPackedWorkPhone() {
+
+    return workPhone;
+  }
+
+  /**
+   * Returns the packed form of the person's mobile phone number.
+   *
+   * @return the packed mobile phone number
+   */
+  public long getPackedMobilePhone() {
+
+    return mobilePhone;
+  }
+
+  /**
+   * Builds an address from its flattened values.
+   *
+   * @param  street  the street address
+   * @param  city    the code of the city
+   * @param  state   the code of the state
+   * @param  zipcode the code of the ZIP code
+   * @param  poBox   the P.O. Box indicator
+   *
+   * @return         a new address
+   */
+  private Address address(String street, int city, int state, int zipcode, boolean poBox) {
+
+    var address = new Address(street, dictionary.decode(city), dictionary.decode(state),
+        dictionary.decode(zipcode));
+    address.poBox = poBox;
+    return address;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, preconfigured Jackson readers and writers for the data model. Building and warming up a
+ * mapper is far more expensive than using one, so each format has a single mapper, built on first
+ * use, and the readers, writers and CSV schemas derived from it are cached per type. Readers and
+ * writers are immutable and safe to use from any number of threads.
+ * <p>
+ * All mappers keep the declared property order and write dates as ISO-8601 text. The CSV mapper
+ * unwraps the home and work addresses of a {@link Person} with {@link Person.PersonMixIn} and uses
+ * {@code ","} between the elements of list values. Genders, ethnicities and phone numbers are read
+ * and written as the same text as their JAXB adapters in {@code org.larrick.datagen.data.xml}. The
+ * enums use their Jackson annotations. Phone numbers are written by {@link PhoneNumber.Serializer},
+ * which the {@link PhoneNumber} class names in its {@code @JsonSerialize} annotation, and read by
+ * {@link PhoneNumber.Deserializer}, which every mapper registers.
+ */
+public final class Mappers {
+
+  /*
+   * Cached schemas, readers and writers, by type.
+   */
+  private static final Map<Class<?>, CsvSchema>    CSV_SCHEMAS  = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectReader> CSV_READERS  = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> CSV_WRITERS  = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectReader> JSON_READERS = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> JSON_WRITERS = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectReader> XML_READERS  = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> XML_WRITERS  = new ConcurrentHashMap<>();
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private Mappers() {}
+
+  /**
+   * Holder for the CSV mapper, built the first time CSV is used.
+   */
+  private static final class Csv {
+
+    static final CsvMapper MAPPER = configure(new CsvMapper());
+
+    static {
+      MAPPER.addMixIn(Person.class, Person.PersonMixIn.class);
+    }
+  }
+
+  /**
+   * Holder for the JSON mapper, built the first time JSON is used.
+   */
+  private static final class Json {
+
+    static final ObjectMapper MAPPER = configure(new ObjectMapper());
+  }
+
+  /**
+   * Holder for the XML mapper, built the first time XML is used.
+   */
+  private static final class Xml {
+
+    static final XmlMapper MAPPER = configure(new XmlMapper());
+  }
+
+  /**
+   * Returns the CSV schema of the given type: its columns in declared order, without a header row.
+   *
+   * @param  type the type of the records
+   *
+   * @return      the cached schema
+   */
+  public static CsvSchema csvSchema(Class<?> type) {
+
+    return CSV_SCHEMAS.computeIfAbsent(type,
+        t -> Csv.MAPPER.schemaFor(t).withArrayElementSeparator(","));
+  }
+
+  /**
+   * Returns a reader of CSV records of the given type. The input starts with a header row whose
+   * columns are matched to properties by name; lines starting with {@code #} are skipped and spaces
+   * around values are trimmed.
+   *
+   * @param  type the type of the records
+   *
+   * @return      the cached reader
+   */
+  public static ObjectReader csvReader(Class<?> type) {
+
+    return CSV_READERS.computeIfAbsent(type,
+        t -> Csv.MAPPER.readerFor(t)
+            .with(csvSchema(t).withHeader().withColumnReordering(true).withComments())
+            .with(CsvParser.Feature.TRIM_SPACES));
+  }
+
+  /**
+   * Returns a writer of CSV records of the given type that starts its output with a header row.
+   *
+   * @param  type the type of the records
+   *
+   * @return      the cached writer
+   */
+  public static ObjectWriter csvWriter(Class<?> type) {
+
+    return CSV_WRITERS.computeIfAbsent(type,
+        t -> Csv.MAPPER.writerFor(t).with(csvSchema(t).withHeader()));
+  }
+
+  /**
+   * Returns a reader of JSON values of the given type.
+   *
+   * @param  type the type of the values
+   *
+   * @return      the cached reader
+   */
+  public static ObjectReader jsonReader(Class<?> type) {
+
+    return JSON_READERS.computeIfAbsent(type, Json.MAPPER::readerFor);
+  }
+
+  /**
+   * Returns a writer of JSON values of the given type.
+   *
+   * @param  type the type of the values
+   *
+   * @return      the cached writer
+   */
+  public static ObjectWriter jsonWriter(Class<?> type) {
+
+    return JSON_WRITERS.computeIfAbsent(type, Json.MAPPER::writerFor);
+  }
+
+  /**
+   * Returns a reader of XML documents of the given type.
+   *
+   * @param  type the type of the documents
+   *
+   * @return      the cached reader
+   */
+  public static ObjectReader xmlReader(Class<?> type) {
+
+    return XML_READERS.computeIfAbsent(type, Xml.MAPPER::readerFor);
+  }
+
+  /**
+   * Returns a writer of XML documents of the given type.
+   *
+   * @param  type the type of the documents
+   *
+   * @return      the cached writer
+   */
+  public static ObjectWriter xmlWriter(Class<?> type) {
+
+    return XML_WRITERS.computeIfAbsent(type, Xml.MAPPER::writerFor);
+  }
+
+  /**
+   * Applies the settings shared by all formats to the given mapper.
+   *
+   * @param  <M>    the type of the mapper
+   * @param  mapper the mapper to configure
+   *
+   * @return        the given mapper
+   */
+  private static <M extends ObjectMapper> M configure(M mapper) {
+
+    mapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, false);
+    mapper.registerModule(new JavaTimeModule());
+    mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    mapper.registerModule(new SimpleModule("datagen").addDeserializer(PhoneNumber.class,
+        new PhoneNumber.Deserializer()));
+    return mapper;
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+/**
+ * Compact representation of a {@link PhoneNumber} as a single {@code long}. A packed number holds
+ * the ten (or seven) digits as the decimal value {@code AAAPPPNNNN}, plus flags for whether the
+ * number is present and whether it has an area code. Packed numbers can be stored in primitive
+ * arrays and compared or hashed as plain {@code long} values; the getters and the
+ * {@code (AAA) PPP-NNNN} format are derived from the value on demand.
+ * <p>
+ * The empty phone number packs to {@link #EMPTY}. Only numbers made of a three-digit area code,
+ * three-digit prefix and four-digit line number can be packed.
+ */
+public final class PackedPhoneNumber {
+
+  /**
+   * The packed value of an empty phone number.
+   */
+  public static final long  EMPTY     = 0L;
+
+  private static final long PRESENT   = 1L << 62;
+  private static final long HAS_AREA  = 1L << 61;
+  private static final long DIGITS    = HAS_AREA - 1;
+
+  private static final long AREA_UNIT = 10_000_000L;
+  private static final long PREFIX    = 10_000L;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private PackedPhoneNumber() {}
+
+  /**
+   * Packs the given phone number.
+   *
+   * @param  phone                    the phone number to pack; may be null
+   *
+   * @return                          the packed phone number
+   *
+   * @throws IllegalArgumentException if the parts of the number are not all digits of the right
+   *                                  length
+   */
+  public static long pack(PhoneNumber phone) {
+
+    if (phone == null) {
+      return EMPTY;
+    }
+
+    return pack(phone.areaCode, phone.prefix, phone.number);
+  }
+
+  /**
+   * Packs the given phone number parts. A null or empty prefix packs to {@link #EMPTY}.
+   *
+   * @param  areaCode                 the three-digit area code; may be null or empty
+   * @param  prefix                   the three-digit prefix
+   * @param  number                   the four-digit line number
+   *
+   * @return                          the packed phone number
+   *
+   * @throws IllegalArgumentException if the parts are not all digits of the right length
+   */
+  public static long pack(String areaCode, String prefix, String number) {
+
+    if (prefix == null || prefix.isEmpty()) {
+      return EMPTY;
+    }
+
+    var value = PRESENT + digits(prefix, 3) * PREFIX + digits(number, 4);
+    if (areaCode != null && !areaCode.isEmpty()) {
+      value |= HAS_AREA;
+      value += digits(areaCode, 3) * AREA_UNIT;
+    }
+    return value;
+  }
+
+  /**
+   * Packs the phone number in the given text, which must be in a format accepted by
+   * {@link PhoneNumber#parse(CharSequence)}.
+   *
+   * @param  text                     the text to parse
+   *
+   * @return                          the packed phone number
+   *
+   * @throws IllegalArgumentException if the text cannot be parsed
+   */
+  public static long parse(CharSequence text) {
+
+    return pack(PhoneNumber.parse(text));
+  }
+
+  /**
+   * Builds a {@link PhoneNumber} object from the packed value.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        a new phone number object
+   */
+  public static PhoneNumber unpack(long packed) {
+
+    if (isEmpty(packed)) {
+      return new PhoneNumber();
+    }
+
+    return new PhoneNumber(getAreaCode(packed), getPrefix(packed), getNumber(packed));
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the packed value is the empty phone number.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        <b>{@code true}</b> if empty
+   */
+  public static boolean isEmpty(long packed) {
+
+    return (packed & PRESENT) == 0;
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the packed phone number has an area code.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        <b>{@code true}</b> if there is an area code
+   */
+  public static boolean hasAreaCode(long packed) {
+
+    return (packed & HAS_AREA) != 0;
+  }
+
+  /**
+   * Returns the area code of the packed phone number.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        the three-digit area code; null if none
+   */
+  public static String getAreaCode(long packed) {
+
+    return hasAreaCode(packed) ? format((packed & DIGITS) / AREA_UNIT, 3) : null;
+  }
+
+  /**
+   * Returns the prefix of the packed phone number.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        the three-digit prefix; null if empty
+   */
+  public static String getPrefix(long packed) {
+
+    return isEmpty(packed) ? null : format((packed & DIGITS) / PREFIX % 1000, 3);
+  }
+
+  /**
+   * Returns the line number of the packed phone number.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        the four-digit line number; null if empty
+   */
+  public static String getNumber(long packed) {
+
+    return isEmpty(packed) ? null : format((packed & DIGITS) % PREFIX, 4);
+  }
+
+  /**
+   * Returns the string representation of the packed phone number, in the same form as
+   * {@link PhoneNumber#toString()}.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        the formatted phone number; an empty string if empty
+   */
+  public static String toString(long packed) {
+
+    if (isEmpty(packed)) {
+      return "";
+    }
+
+    var chars = new char[hasAreaCode(packed) ? 14 : 8];
+    var pos = chars.length;
+    var digits = packed & DIGITS;
+    for (var i = 0; i < 4; i++, digits /= 10) {
+      chars[--pos] = (char) ('0' + digits % 10);
+    }
+    chars[--pos] = '-';
+    for (var i = 0; i < 3; i++, digits /= 10) {
+      chars[--pos] = (char) ('0' + digits % 10);
+    }
+    if (pos > 0) {
+      chars[--pos] = ' ';
+      chars[--pos] = ')';
+      for (var i = 0; i < 3; i++, digits /= 10) {
+        chars[--pos] = (char) ('0' + digits % 10);
+      }
+      chars[--pos] = '(';
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns the numeric value of the given digit string.
+   *
+   * @param  text                     the digits
+   * @param  length                   the required number of digits
+   *
+   * @return                          the value of the digits
+   *
+   * @throws IllegalArgumentException if the text is not all digits of the given length
+   */
+  private static long digits(String text, int length) {
+
+    if (text == null || text.length() != length) {
+      throw new IllegalArgumentException("Invalid phone number part: " + text);
+    }
+
+    var value = 0L;
+    for (var i = 0; i < length; i++) {
+      var ch = text.charAt(i);
+      if (ch < '0' || ch > '9') {
+        throw new IllegalArgumentException("Invalid phone number part: " + text);
+      }
+      value = value * 10 + (ch - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Formats the given value as a zero-padded digit string.
+   *
+   * @param  value  the value to format
+   * @param  length the number of digits
+   *
+   * @return        the digit string
+   */
+  private static String format(long value, int length) {
+
+    var chars = new char[length];
+    for (var i = length - 1; i >= 0; i--, value /= 10) {
+      chars[i] = (char) ('0' + value % 10);
+    }
+    return new String(chars);
+  }
+}
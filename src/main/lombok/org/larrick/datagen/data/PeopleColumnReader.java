@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader of the columnar files written by {@link PeopleColumnWriter}. Opening a file reads only its
+ * footer; column chunks are read on request, so a scan of a few columns does not touch the rest of
+ * the file. The min/max statistics of each chunk are available without reading the chunk, which
+ * lets callers skip row groups that cannot match.
+ */
+public final class PeopleColumnReader implements Closeable {
+
+  /**
+   * The min/max statistics of a single column chunk. Text columns use {@link #getMinText()} and
+   * {@link #getMaxText()}; numeric columns use {@link #getMin()} and {@link #getMax()}.
+   */
+  public static final class ColumnStats {
+
+    private final boolean present;
+    private final String  minText;
+    private final String  maxText;
+    private final long    min;
+    private final long    max;
+
+    /**
+     * Constructs the statistics of a chunk.
+     *
+     * @param present <b>{@code true}</b> if the chunk has a non-null value
+     * @param minText the smallest text value
+     * @param maxText the largest text value
+     * @param min     the smallest numeric value
+     * @param max     the largest numeric value
+     */
+    private ColumnStats(boolean present, String minText, String maxText, long min, long max) {
+
+      this.present = present;
+      this.minText = minText;
+      this.maxText = maxText;
+      this.min = min;
+      this.max = max;
+    }
+
+    /**
+     * Returns <b>{@code true}</b> if the chunk holds at least one non-null value.
+     *
+     * @return <b>{@code true}</b> if there are statistics
+     */
+    public boolean isPresent() {
+
+      return present;
+    }
+
+    /**
+     * Returns the smallest value of a text column chunk.
+     *
+     * @return the smallest value; null if none
+     */
+    public String getMinText() {
+
+      return minText;
+    }
+
+    /**
+     * Returns the largest value of a text column chunk.
+     *
+     * @return the largest value; null if none
+     */
+    public String getMaxText() {
+
+      return maxText;
+    }
+
+    /**
+     * Returns the smallest value of a numeric column chunk.
+     *
+     * @return the smallest value
+     */
+    public long getMin() {
+
+      return min;
+    }
+
+    /**
+     * Returns the largest value of a numeric column chunk.
+     *
+     * @return the largest value
+     */
+    public long getMax() {
+
+      return max;
+    }
+  }
+
+  private final FileChannel     channel;
+  private final int[]           rowCounts;
+  private final long[][]        offsets;
+  private final int[][]         lengths;
+  private final byte[][]        encodings;
+  private final ColumnStats[][] stats;
+
+  /**
+   * Reads the footer of the file open on the given channel.
+   *
+   * @param  channel     the open file
+   *
+   * @throws IOException if the footer cannot be read or the file is not a columnar file
+   */
+  private PeopleColumnReader(FileChannel channel) throws IOException {
+
+    this.channel = channel;
+
+    var size = channel.size();
+    if (size < 4 * Integer.BYTES) {
+      throw new IOException("Not a people column file");
+    }
+    var header = read(0, 2 * Integer.BYTES);
+    if (header.getInt() != PeopleColumns.MAGIC || header.getInt() != PeopleColumns.VERSION) {
+      throw new IOException("Not a people column file");
+    }
+    var tail = read(size - 2 * Integer.BYTES, 2 * Integer.BYTES);
+    var length = tail.getInt();
+    if (tail.getInt() != PeopleColumns.MAGIC) {
+      throw new IOException("Truncated people column file");
+    }
+
+    var footer = read(size - Integer.BYTES - length, length);
+    var in = new DataInputStream(
+        new ByteArrayInputStream(footer.array(), footer.arrayOffset(), length));
+
+    var columns = in.readInt();
+    if (columns != PeopleColumns.COLUMNS.size()) {
+      throw new IOException("Unsupported column layout");
+    }
+    for (var column : PeopleColumns.COLUMNS) {
+      if (!column.name.equals(in.readUTF()) || column.text != in.readBoolean()) {
+        throw new IOException("Unsupported column layout");
+      }
+    }
+
+    var groups = in.readInt();
+    rowCounts = new int[groups];
+    offsets = new long[groups][columns];
+    lengths = new int[groups][columns];
+    encodings = new byte[groups][columns];
+    stats = new ColumnStats[groups][columns];
+    for (var g = 0; g < groups; g++) {
+      rowCounts[g] = in.readInt();
+      for (var c = 0; c < columns; c++) {
+        var present = in.readBoolean();
+        if (PeopleColumns.COLUMNS.get(c).text) {
+          stats[g][c] = present ? new ColumnStats(true, in.readUTF(), in.readUTF(), 0, 0)
+              : new ColumnStats(false, null, null, 0, 0);
+        } else {
+          stats[g][c] = present ? new ColumnStats(true, null, null, in.readLong(), in.readLong())
+              : new ColumnStats(false, null, null, 0, 0);
+        }
+        offsets[g][c] = in.readLong();
+        lengths[g][c] = in.readInt();
+        encodings[g][c] = in.readByte();
+      }
+    }
+  }
+
+  /**
+   * Opens the given columnar file and reads its footer.
+   *
+   * @param  path        the file to open
+   *
+   * @return             a new reader
+   *
+   * @throws IOException if the file cannot be read or is not a columnar file
+   */
+  public static PeopleColumnReader open(Path path) throws IOException {
+
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new PeopleColumnReader(channel);
+    } catch (IOException | RuntimeException exc) {
+      channel.close();
+      throw exc;
+    }
+  }
+
+  /**
+   * Returns the names of the columns, in file order.
+   *
+   * @return the column names
+   */
+  public List<String> columns() {
+
+    var names = new ArrayList<String>(PeopleColumns.COLUMNS.size());
+    for (var column : PeopleColumns.COLUMNS) {
+      names.add(column.name);
+    }
+    return names;
+  }
+
+  /**
+   * Returns the number of row groups in the file.
+   *
+   * @return the number of row groups
+   */
+  public int rowGroups() {
+
+    return rowCounts.length;
+  }
+
+  /**
+   * Returns the number of records in the given row group.
+   *
+   * @param  group the index of the row group
+   *
+   * @return       the number of records
+   */
+  public int rowCount(int group) {
+
+    return rowCounts[group];
+  }
+
+  /**
+   * Returns the total number of records in the file.
+   *
+   * @return the number of records
+   */
+  public long rowCount() {
+
+    var count = 0L;
+    for (var rows : rowCounts) {
+      count += rows;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the min/max statistics of a column chunk.
+   *
+   * @param  group                    the index of the row group
+   * @param  column                   the column name
+   *
+   * @return                          the chunk statistics
+   *
+   * @throws IllegalArgumentException if there is no such column
+   */
+  public ColumnStats stats(int group, String column) {
+
+    return stats[group][PeopleColumns.indexOf(column)];
+  }
+
+  /**
+   * Reads the values of a text column chunk.
+   *
+   * @param  group                    the index of the row group
+   * @param  column                   the column name
+   *
+   * @return                          the values of the chunk, one per record
+   *
+   * @throws IOException              if the chunk cannot be read
+   * @throws IllegalArgumentException if there is no such text column
+   */
+  public String[] readText(int group, String column) throws IOException {
+
+    var index = PeopleColumns.indexOf(column);
+    if (!PeopleColumns.COLUMNS.get(index).text) {
+      throw new IllegalArgumentException("Not a text column: " + column);
+    }
+
+    var in = read(offsets[group][index], lengths[group][index]);
+    var values = new String[rowCounts[group]];
+    if (encodings[group][index] == PeopleColumns.DICTIONARY) {
+      var entries = new String[(int) PeopleColumns.getVarLong(in)];
+      for (var i = 0; i < entries.length; i++) {
+        entries[i] = PeopleColumns.getString(in);
+      }
+      for (var i = 0; i < values.length; i++) {
+        var code = (int) PeopleColumns.getVarLong(in);
+        values[i] = (code == 0) ? null : entries[code - 1];
+      }
+    } else {
+      for (var i = 0; i < values.length; i++) {
+        values[i] = PeopleColumns.getString(in);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reads the values of a numeric column chunk. Birth dates are returned as epoch days, with
+   * {@link Long#MIN_VALUE} for a missing date, and phone numbers as {@link PackedPhoneNumber packed}
+   * values.
+   *
+   * @param  group                    the index of the row group
+   * @param  column                   the column name
+   *
+   * @return                          the values of the chunk, one per record
+   *
+   * @throws IOException              if the chunk cannot be read
+   * @throws IllegalArgumentException if there is no such numeric column
+   */
+  public long[] readNumbers(int group, String column) throws IOException {
+
+    var index = PeopleColumns.indexOf(column);
+    if (PeopleColumns.COLUMNS.get(index).text) {
+      throw new IllegalArgumentException("Not a numeric column: " + column);
+    }
+
+    var in = read(offsets[group][index], lengths[group][index]);
+    var delta = (encodings[group][index] == PeopleColumns.DELTA);
+    var values = new long[rowCounts[group]];
+    var previous = 0L;
+    for (var i = 0; i < values.length; i++) {
+      var value = PeopleColumns.getZigZag(in);
+      previous = delta ? previous + value : value;
+      values[i] = previous;
+    }
+    return values;
+  }
+
+  /**
+   * Reads all records of the file, filling in only the given columns. The other fields of each
+   * person keep their default values.
+   *
+   * @param  columns                  the names of the columns to read; all columns if none given
+   *
+   * @return                          the records read
+   *
+   * @throws IOException              if a chunk cannot be read
+   * @throws IllegalArgumentException if a column does not exist or the file is too large for a list
+   */
+  public People read(String... columns) throws IOException {
+
+    var total = rowCount();
+    if (total > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many records for a list: " + total);
+    }
+    var names = (columns.length == 0) ? columns().toArray(new String[0]) : columns;
+
+    var people = new People((int) total);
+    for (var g = 0; g < rowGroups(); g++) {
+      var group = new Person[rowCounts[g]];
+      for (var i = 0; i < group.length; i++) {
+        group[i] = new Person();
+      }
+
+      for (var name : names) {
+        var column = PeopleColumns.COLUMNS.get(PeopleColumns.indexOf(name));
+        if (column.text) {
+          var values = readText(g, name);
+          for (var i = 0; i < group.length; i++) {
+            column.setText.accept(group[i], values[i]);
+          }
+        } else {
+          var values = readNumbers(g, name);
+          for (var i = 0; i < group.length; i++) {
+            column.setNumber.accept(group[i], values[i]);
+          }
+        }
+      }
+
+      for (var person : group) {
+        people.add(person);
+      }
+    }
+    return people;
+  }
+
+  /**
+   * Reads a range of bytes of the file.
+   *
+   * @param  position    the file position of the first byte
+   * @param  length      the number of bytes to read
+   *
+   * @return             a heap buffer of the bytes, positioned at the start
+   *
+   * @throws IOException if the bytes cannot be read
+   */
+  private ByteBuffer read(long position, int length) throws IOException {
+
+    var buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Truncated people column file");
+      }
+    }
+    return buffer.flip();
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+
+    channel.close();
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.larrick.datagen.data.PeopleColumns.Column;
+
+/**
+ * Writer of {@link Person} records to a self-contained columnar file. Records are buffered into row
+ * groups; each row group is written as one chunk per column, so readers such as
+ * {@link PeopleColumnReader} can load only the columns they need. Gender, ethnicity, names,
+ * cities, states and other repeated text values are dictionary-encoded, ages and birth dates are
+ * delta-encoded, and the footer holds the min/max values of every column chunk.
+ * <p>
+ * Closing the writer writes the last row group and the footer, and closes the output stream.
+ */
+public final class PeopleColumnWriter implements Closeable {
+
+  private final OutputStream out;
+  private final List<Person> rows         = new ArrayList<Person>();
+  private final List<byte[]> groups       = new ArrayList<byte[]>();
+  private int                rowGroupSize = 65_536;
+  private long               offset;
+
+  /**
+   * Constructs a writer to the given output stream and writes the file header.
+   *
+   * @param  out         the output stream to write
+   *
+   * @throws IOException if the header cannot be written
+   */
+  public PeopleColumnWriter(OutputStream out) throws IOException {
+
+    this.out = out;
+    var header = new DataOutputStream(out);
+    header.writeInt(PeopleColumns.MAGIC);
+    header.writeInt(PeopleColumns.VERSION);
+    offset = 2 * Integer.BYTES;
+  }
+
+  /**
+   * Sets the number of records in each row group.
+   *
+   * @param  rowGroupSize the number of records per row group
+   *
+   * @return              this writer
+   */
+  public PeopleColumnWriter setRowGroupSize(int rowGroupSize) {
+
+    if (rowGroupSize <= 0) {
+      throw new IllegalArgumentException("Invalid row group size: " + rowGroupSize);
+    }
+    this.rowGroupSize = rowGroupSize;
+    return this;
+  }
+
+  /**
+   * Writes a single person record.
+   *
+   * @param  person      the person to write
+   *
+   * @throws IOException if a row group cannot be written
+   */
+  public void write(Person person) throws IOException {
+
+    rows.add(person);
+    if (rows.size() >= rowGroupSize) {
+      writeRowGroup();
+    }
+  }
+
+  /**
+   * Writes all records of the given collection.
+   *
+   * @param  people      the people to write
+   *
+   * @throws IOException if a row group cannot be written
+   */
+  public void writeAll(People people) throws IOException {
+
+    for (var person : people.getList()) {
+      write(person);
+    }
+  }
+
+  /**
+   * Writes the buffered records as a row group, and records its chunk metadata for the footer.
+   *
+   * @throws IOException if the row group cannot be written
+   */
+  private void writeRowGroup() throws IOException {
+
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    var meta = new ByteArrayOutputStream();
+    var data = new DataOutputStream(meta);
+    data.writeInt(rows.size());
+
+    for (var column : PeopleColumns.COLUMNS) {
+      var chunk = new ByteArrayOutputStream();
+      byte encoding;
+      if (column.text) {
+        encoding = encodeText(column, chunk, data);
+      } else {
+        encoding = encodeNumbers(column, chunk, data);
+      }
+
+      data.writeLong(offset);
+      data.writeInt(chunk.size());
+      data.writeByte(encoding);
+      chunk.writeTo(out);
+      offset += chunk.size();
+    }
+
+    data.flush();
+    groups.add(meta.toByteArray());
+    rows.clear();
+  }
+
+  /**
+   * Encodes a text column of the buffered records, as dictionary codes when the values repeat and
+   * as plain strings otherwise, and writes its min/max statistics.
+   *
+   * @param  column      the column to encode
+   * @param  chunk       the stream receiving the encoded values
+   * @param  stats       the stream receiving the statistics
+   *
+   * @return             the encoding used
+   *
+   * @throws IOException if the statistics cannot be written
+   */
+  private byte encodeText(Column column, ByteArrayOutputStream chunk, DataOutputStream stats)
+      throws IOException {
+
+    var values = new String[rows.size()];
+    var dictionary = new HashMap<String, Integer>();
+    var entries = new ArrayList<String>();
+    String min = null;
+    String max = null;
+    for (var i = 0; i < values.length; i++) {
+      var value = column.getText.apply(rows.get(i));
+      values[i] = value;
+      if (value != null) {
+        if (dictionary.putIfAbsent(value, entries.size()) == null) {
+          entries.add(value);
+        }
+        min = (min == null || value.compareTo(min) < 0) ? value : min;
+        max = (max == null || value.compareTo(max) > 0) ? value : max;
+      }
+    }
+
+    byte encoding;
+    if (entries.size() <= values.length / 2) {
+      encoding = PeopleColumns.DICTIONARY;
+      PeopleColumns.putVarLong(chunk, entries.size());
+      for (var entry : entries) {
+        PeopleColumns.putString(chunk, entry);
+      }
+      for (var value : values) {
+        PeopleColumns.putVarLong(chunk, (value == null) ? 0 : dictionary.get(value) + 1);
+      }
+    } else {
+      encoding = PeopleColumns.PLAIN;
+      for (var value : values) {
+        PeopleColumns.putString(chunk, value);
+      }
+    }
+
+    stats.writeBoolean(min != null);
+    if (min != null) {
+      stats.writeUTF(min);
+      stats.writeUTF(max);
+    }
+    return encoding;
+  }
+
+  /**
+   * Encodes a numeric column of the buffered records and writes its min/max statistics.
+   *
+   * @param  column      the column to encode
+   * @param  chunk       the stream receiving the encoded values
+   * @param  stats       the stream receiving the statistics
+   *
+   * @return             the encoding used
+   *
+   * @throws IOException if the statistics cannot be written
+   */
+  private byte encodeNumbers(Column column, ByteArrayOutputStream chunk, DataOutputStream stats)
+      throws IOException {
+
+    var min = Long.MAX_VALUE;
+    var max = Long.MIN_VALUE;
+    var previous = 0L;
+    for (var person : rows) {
+      var value = column.getNumber.applyAsLong(person);
+      if (value != PeopleColumns.NULL) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      PeopleColumns.putZigZag(chunk, column.delta ? value - previous : value);
+      previous = value;
+    }
+
+    var present = (min <= max);
+    stats.writeBoolean(present);
+    if (present) {
+      stats.writeLong(min);
+      stats.writeLong(max);
+    }
+    return column.delta ? PeopleColumns.DELTA : PeopleColumns.VARINT;
+  }
+
+  /**
+   * Writes the last row group and the footer, and closes the output stream.
+   *
+   * @throws IOException if the file cannot be finished
+   */
+  @Override
+  public void close() throws IOException {
+
+    try (out) {
+      writeRowGroup();
+
+      var footer = new ByteArrayOutputStream();
+      var data = new DataOutputStream(footer);
+      data.writeInt(PeopleColumns.COLUMNS.size());
+      for (var column : PeopleColumns.COLUMNS) {
+        data.writeUTF(column.name);
+        data.writeBoolean(column.text);
+      }
+      data.writeInt(groups.size());
+      for (var group : groups) {
+        data.write(group);
+      }
+      data.writeInt(footer.size() + Integer.BYTES);
+      data.writeInt(PeopleColumns.MAGIC);
+      data.flush();
+      footer.writeTo(out);
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * The column layout and value encodings shared by {@link PeopleColumnWriter} and
+ * {@link PeopleColumnReader}.
+ * <p>
+ * A columnar file starts with a magic number and version, followed by the column chunks of each
+ * row group and a footer. The footer lists the columns, then the row count of each row group and
+ * the offset, length, encoding and min/max statistics of each of its column chunks. The file ends
+ * with the length of the footer and the magic number again, so readers can find the footer and
+ * read only the chunks they need.
+ * <p>
+ * Text columns are encoded per chunk as either plain strings or dictionary codes, whichever the
+ * writer finds smaller for the chunk. Numeric columns are encoded as zig-zag variable-length
+ * integers, either as plain values or as deltas from the previous value.
+ */
+final class PeopleColumns {
+
+  static final int  MAGIC      = 0x50434F4C;                                 // "PCOL"
+  static final int  VERSION    = 1;
+
+  /**
+   * The value of a missing number, such as a missing birth date.
+   */
+  static final long NULL       = Long.MIN_VALUE;
+
+  // chunk encodings
+  static final byte PLAIN      = 0;
+  static final byte DICTIONARY = 1;
+  static final byte VARINT     = 2;
+  static final byte DELTA      = 3;
+
+  /**
+   * A single column of the layout.
+   */
+  static final class Column {
+
+    final String                     name;
+    final boolean                    text;
+    final boolean                    delta;
+    final Function<Person, String>   getText;
+    final BiConsumer<Person, String> setText;
+    final ToLongFunction<Person>     getNumber;
+    final ObjLongConsumer<Person>    setNumber;
+
+    /**
+     * Constructs a column.
+     *
+     * @param name      the column name
+     * @param delta     <b>{@code true}</b> to delta-encode a numeric column
+     * @param getText   the text value extractor; null for a numeric column
+     * @param setText   the text value setter; null for a numeric column
+     * @param getNumber the numeric value extractor; null for a text column
+     * @param setNumber the numeric value setter; null for a text column
+     */
+    private Column(String name, boolean delta, Function<Person, String> getText,
+        BiConsumer<Person, String> setText, ToLongFunction<Person> getNumber,
+        ObjLongConsumer<Person> setNumber) {
+
+      this.name = name;
+      this.text = (getText != null);
+      this.delta = delta;
+      this.getText = getText;
+      this.setText = setText;
+      this.getNumber = getNumber;
+      this.setNumber = setNumber;
+    }
+  }
+
+  /**
+   * The columns of a person, in the order of the CSV output.
+   */
+  static final List<Column> COLUMNS = List.of(
+      text("ethnicity", p -> (p.ethnicity == null) ? null : p.ethnicity.toString(),
+          (p, v) -> p.ethnicity = (v == null) ? null : Ethnicity.ofLabel(v)),
+      text("gender", p -> (p.gender == null) ? null : p.gender.toString(),
+          (p, v) -> p.gender = (v == null) ? null : Gender.ofLabel(v)),
+      text("surname", p -> p.surname, (p, v) -> p.surname = v),
+      text("givenName", p -> p.givenName, (p, v) -> p.givenName = v),
+      text("middleInit", p -> p.middleInit, (p, v) -> p.middleInit = v),
+      number("birthdate", true,
+          p -> (p.birthdate == null) ? NULL : p.birthdate.toEpochDay(),
+          (p, v) -> p.birthdate = (v == NULL) ? null : LocalDate.ofEpochDay(v)),
+      number("age", true, p -> p.age, (p, v) -> p.age = (int) v),
+      text("ssn", p -> p.ssn, (p, v) -> p.ssn = v),
+      text("home.street", p -> (p.home == null) ? null : p.home.street,
+          (p, v) -> p.home.street = v),
+      text("home.city", p -> (p.home == null) ? null : p.home.city, (p, v) -> p.home.city = v),
+      text("home.state", p -> (p.home == null) ? null : p.home.state,
+          (p, v) -> p.home.state = v),
+      text("home.zipcode", p -> (p.home == null) ? null : p.home.zipcode,
+          (p, v) -> p.home.zipcode = v),
+      text("work.street", p -> (p.work == null) ? null : p.work.street,
+          (p, v) -> p.work.street = v),
+      text("work.city", p -> (p.work == null) ? null : p.work.city, (p, v) -> p.work.city = v),
+      text("work.state", p -> (p.work == null) ? null : p.work.state,
+          (p, v) -> p.work.state = v),
+      text("work.zipcode", p -> (p.work == null) ? null : p.work.zipcode,
+          (p, v) -> p.work.zipcode = v),
+      number("homePhone", false, p -> PackedPhoneNumber.pack(p.homePhone),
+          (p, v) -> p.homePhone = PackedPhoneNumber.unpack(v)),
+      number("workPhone", false, p -> PackedPhoneNumber.pack(p.workPhone),
+          (p, v) -> p.workPhone = PackedPhoneNumber.unpack(v)),
+      number("mobilePhone", false, p -> PackedPhoneNumber.pack(p.mobilePhone),
+          (p, v) -> p.mobilePhone = PackedPhoneNumber.unpack(v)));
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private PeopleColumns() {}
+
+  /**
+   * Returns a text column.
+   *
+   * @param  name the column name
+   * @param  get  the value extractor
+   * @param  set  the value setter
+   *
+   * @return      a new column
+   */
+  private static Column text(String name, Function<Person, String> get,
+      BiConsumer<Person, String> set) {
+
+    return new Column(name, false, get, set, null, null);
+  }
+
+  /**
+   * Returns a numeric column.
+   *
+   * @param  name  the column name
+   * @param  delta <b>{@code true}</b> to delta-encode the column
+   * @param  get   the value extractor
+   * @param  set   the value setter
+   *
+   * @return       a new column
+   */
+  private static Column number(String name, boolean delta, ToLongFunction<Person> get,
+      ObjLongConsumer<Person> set) {
+
+    return new Column(name, delta, null, null, get, set);
+  }
+
+  /**
+   * Returns the index of the named column.
+   *
+   * @param  name                     the column name
+   *
+   * @return                          the index of the column
+   *
+   * @throws IllegalArgumentException if there is no such column
+   */
+  static int indexOf(String name) {
+
+    for (var i = 0; i < COLUMNS.size(); i++) {
+      if (COLUMNS.get(i).name.equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Invalid column: " + name);
+  }
+
+  /**
+   * Writes an unsigned variable-length integer, seven bits per byte.
+   *
+   * @param out   the stream to write
+   * @param value the value to write
+   */
+  static void putVarLong(ByteArrayOutputStream out, long value) {
+
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * Reads an unsigned variable-length integer written by
+   * {@link #putVarLong(ByteArrayOutputStream, long)}.
+   *
+   * @param  in the buffer to read
+   *
+   * @return    the value read
+   */
+  static long getVarLong(ByteBuffer in) {
+
+    var value = 0L;
+    for (var shift = 0;; shift += 7) {
+      var b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Writes a signed value as a zig-zag variable-length integer.
+   *
+   * @param out   the stream to write
+   * @param value the value to write
+   */
+  static void putZigZag(ByteArrayOutputStream out, long value) {
+
+    putVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Reads a signed value written by {@link #putZigZag(ByteArrayOutputStream, long)}.
+   *
+   * @param  in the buffer to read
+   *
+   * @return    the value read
+   */
+  static long getZigZag(ByteBuffer in) {
+
+    var value = getVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Writes a string as its UTF-8 length plus one, followed by its bytes. A null string is written
+   * as a zero length.
+   *
+   * @param out   the stream to write
+   * @param value the string to write; may be null
+   */
+  static void putString(ByteArrayOutputStream out, String value) {
+
+    if (value == null) {
+      out.write(0);
+      return;
+    }
+
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    putVarLong(out, bytes.length + 1L);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads a string written by {@link #putString(ByteArrayOutputStream, String)}.
+   *
+   * @param  in the buffer to read
+   *
+   * @return    the string read; may be null
+   */
+  static String getString(ByteBuffer in) {
+
+    var length = (int) getVarLong(in) - 1;
+    if (length < 0) {
+      return null;
+    }
+
+    var value = new String(in.array(), in.arrayOffset() + in.position(), length,
+        StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+}
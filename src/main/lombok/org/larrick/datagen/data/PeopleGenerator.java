@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Engine that generates large numbers of {@link Person} records across all cores. The requested
+ * count is split into fixed-size shards that run on a {@link ForkJoinPool}. Each shard gets its
+ * own {@link Random}, seeded from the master seed by shard number, so the records of a shard do not
+ * depend on the number of threads. Completed shards are handed to a {@link PersonSink} on the
+ * calling thread, either in shard order or as they finish, and only a few shards per thread are in
+ * memory at any time.
+ * <p>
+ * For a given master seed, ordered output is identical whatever the parallelism; unordered output
+ * holds the same records, possibly in a different order.
+ */
+public final class PeopleGenerator {
+
+  /**
+   * Creates a single person.
+   */
+  @FunctionalInterface
+  public interface PersonFactory {
+
+    /**
+     * Creates a new person.
+     *
+     * @param  random the source of randomness for the current shard
+     *
+     * @return        a new person
+     */
+    Person create(Random random);
+  }
+
+  /**
+   * Receives generated people, one at a time, on the thread that called
+   * {@link PeopleGenerator#generate}.
+   */
+  @FunctionalInterface
+  public interface PersonSink {
+
+    /**
+     * Accepts a generated person.
+     *
+     * @param  person      the generated person
+     *
+     * @throws IOException if the person cannot be stored
+     */
+    void accept(Person person) throws IOException;
+  }
+
+  private final PersonFactory factory;
+  private int                 shardSize   = 10_000;
+  private int                 parallelism = Runtime.getRuntime().availableProcessors();
+  private boolean             ordered     = true;
+
+  /**
+   * Constructs a generator that creates people with the given factory.
+   *
+   * @param factory the factory for single people
+   */
+  public PeopleGenerator(PersonFactory factory) {
+
+    this.factory = factory;
+  }
+
+  /**
+   * Sets the number of people generated by each shard. The shard size is part of the seeding, so it
+   * must stay the same to reproduce a data set.
+   *
+   * @param  shardSize the number of people per shard
+   *
+   * @return           this generator
+   */
+  public PeopleGenerator setShardSize(int shardSize) {
+
+    if (shardSize <= 0) {
+      throw new IllegalArgumentException("Invalid shard size: " + shardSize);
+    }
+    this.shardSize = shardSize;
+    return this;
+  }
+
+  /**
+   * Sets the number of worker threads.
+   *
+   * @param  parallelism the number of worker threads
+   *
+   * @return             this generator
+   */
+  public PeopleGenerator setParallelism(int parallelism) {
+
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Sets whether shards are delivered in shard order (the default) or as they finish.
+   *
+   * @param  ordered <b>{@code true}</b> to deliver shards in order
+   *
+   * @return         this generator
+   */
+  public PeopleGenerator setOrdered(boolean ordered) {
+
+    this.ordered = ordered;
+    return this;
+  }
+
+  /**
+   * Generates the given number of people and hands them to the sink.
+   *
+   * @param  count       the number of people to generate
+   * @param  seed        the master seed
+   * @param  sink        the receiver of the generated people
+   *
+   * @throws IOException if the sink fails or the calling thread is interrupted
+   */
+  public void generate(long count, long seed, PersonSink sink) throws IOException {
+
+    var shards = (count + shardSize - 1) / shardSize;
+    var window = 2 * parallelism;
+    var seeds = new SplittableRandom(seed);
+    var pool = new ForkJoinPool(parallelism);
+    CompletionService<List<Person>> completion = new ExecutorCompletionService<>(pool);
+    var pending = new ArrayDeque<Future<List<Person>>>(window);
+
+    try {
+      long next = 0;
+      while (next < shards || !pending.isEmpty()) {
+        // keep the window of running shards full
+        while (next < shards && pending.size() < window) {
+          var size = (int) Math.min(shardSize, count - next * shardSize);
+          var random = new Random(seeds.nextLong());
+          Callable<List<Person>> task = () -> shard(size, random);
+          // ordered shards are waited on in turn; unordered ones come from the completion queue
+          pending.add(ordered ? pool.submit(task) : completion.submit(task));
+          next++;
+        }
+
+        var done = ordered ? pending.poll() : completion.take();
+        if (!ordered) {
+          pending.remove(done);
+        }
+        for (var person : done.get()) {
+          sink.accept(person);
+        }
+      }
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Generation interrupted");
+    } catch (ExecutionException exc) {
+      var cause = exc.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Generates the people of a single shard.
+   *
+   * @param  size   the number of people to generate
+   * @param  random the source of randomness for the shard
+   *
+   * @return        the generated people
+   */
+  private List<Person> shard(int size, Random random) {
+
+    var people = new ArrayList<Person>(size);
+    for (var i = 0; i < size; i++) {
+      people.add(factory.create(random));
+    }
+    return people;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streaming writer for {@link Person} records. Each record is serialized as soon as it is written,
+ * so memory use does not grow with the number of records. The output has the same layout as a
+ * serialized {@link People} object: a header row for CSV, a {@code {"Person":[...]}} object for
+ * JSON and a {@code <People>} element of {@code <Person>} elements for XML. The records are written
+ * with the shared {@link Mappers}, so creating a writer builds no mapper.
+ * <p>
+ * Closing the writer finishes the document and closes the output stream.
+ */
+public final class PeopleWriter implements Closeable, Flushable {
+
+  private static final String   ROOT   = "People";
+  private static final String   RECORD = "Person";
+
+  /*
+   * CSV and JSON records go through a sequence writer. XML records are written one at a time to a
+   * single generator, because each needs its own root element.
+   */
+  private final SequenceWriter  sequence;
+  private final ObjectWriter    writer;
+  private final JsonGenerator   generator;
+  private final XMLStreamWriter xml;
+  private final OutputStream    out;
+
+  /**
+   * Constructs a writer over the given record writers and document wrappers.
+   *
+   * @param sequence  the sequence writer for the records; null for XML output
+   * @param writer    the object writer for XML records; null if not XML output
+   * @param generator the generator to finish on close; null for CSV output
+   * @param xml       the XML writer to finish on close; null if not XML output
+   * @param out       the output stream to close
+   */
+  private PeopleWriter(SequenceWriter sequence, ObjectWriter writer, JsonGenerator generator,
+      XMLStreamWriter xml, OutputStream out) {
+
+    this.sequence = sequence;
+    this.writer = writer;
+    this.generator = generator;
+    this.xml = xml;
+    this.out = out;
+  }
+
+  /**
+   * Returns a writer of CSV records, starting with a header row.
+   *
+   * @param  out         the output stream to write
+   *
+   * @return             a new CSV writer
+   *
+   * @throws IOException if the header cannot be written
+   */
+  public static PeopleWriter csv(OutputStream out) throws IOException {
+
+    var sequence = Mappers.csvWriter(Person.class).writeValues(out);
+    return new PeopleWriter(sequence, null, null, null, out);
+  }
+
+  /**
+   * Returns a writer of a JSON {@code People} object.
+   *
+   * @param  out         the output stream to write
+   *
+   * @return             a new JSON writer
+   *
+   * @throws IOException if the start of the object cannot be written
+   */
+  public static PeopleWriter json(OutputStream out) throws IOException {
+
+    var writer = Mappers.jsonWriter(Person.class);
+    var generator = writer.getFactory().createGenerator(out);
+    generator.writeStartObject();
+    generator.writeFieldName(RECORD);
+    generator.writeStartArray();
+
+    var sequence = writer.writeValues(generator);
+    return new PeopleWriter(sequence, null, generator, null, out);
+  }
+
+  /**
+   * Returns a writer of an XML {@code People} document.
+   *
+   * @param  out         the output stream to write
+   *
+   * @return             a new XML writer
+   *
+   * @throws IOException if the start of the document cannot be written
+   */
+  public static PeopleWriter xml(OutputStream out) throws IOException {
+
+    var writer = Mappers.xmlWriter(Person.class).withRootName(RECORD);
+    var factory = (XmlFactory) writer.getFactory();
+
+    try {
+      var xml = factory.getXMLOutputFactory().createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      xml.writeStartElement(ROOT);
+
+      var generator = factory.createGenerator(xml);
+      return new PeopleWriter(null, writer, generator, xml, out);
+    } catch (XMLStreamException exc) {
+      throw new IOException(exc);
+    }
+  }
+
+  /**
+   * Writes a single person record.
+   *
+   * @param  person      the person to write
+   *
+   * @throws IOException if the record cannot be written
+   */
+  public void write(Person person) throws IOException {
+
+    if (sequence != null) {
+      sequence.write(person);
+    } else {
+      writer.writeValue(generator, person);
+    }
+  }
+
+  /**
+   * Writes all records of the given collection.
+   *
+   * @param  people      the people to write
+   *
+   * @throws IOException if a record cannot be written
+   */
+  public void writeAll(People people) throws IOException {
+
+    for (var person : people.getList()) {
+      write(person);
+    }
+  }
+
+  /**
+   * Flushes buffered output to the output stream.
+   *
+   * @throws IOException if the output cannot be flushed
+   */
+  @Override
+  public void flush() throws IOException {
+
+    if (sequence != null) {
+      sequence.flush();
+    } else {
+      generator.flush();
+    }
+  }
+
+  /**
+   * Finishes the document and closes the output stream.
+   *
+   * @throws IOException if the document cannot be finished
+   */
+  @Override
+  public void close() throws IOException {
+
+    try (out) {
+      if (sequence != null) {
+        sequence.close();
+      }
+      if (xml != null) {
+        generator.flush();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+      } else if (generator != null) {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+      }
+    } catch (XMLStreamException exc) {
+      throw new IOException(exc);
+    }
+  }
+}
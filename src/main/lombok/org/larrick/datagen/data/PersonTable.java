@@ -0,0 +1,807 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Off-heap table of {@link Person} records. Each person is stored as a fixed-width record in direct
+ * or memory-mapped {@link ByteBuffer} segments, with the birth date as an epoch day and the SSN and
+ * phone numbers as packed digits. Names, cities, states and ZIP codes repeat across people and are
+ * stored as codes into a {@link StringDictionary}, which stays small however many records are
+ * added. Streets are close to unique per person, so they are stored as UTF-8 bytes in an off-heap
+ * string area, also held in segments, and a record holds the offset of each street. The heap use
+ * of the table therefore does not grow with the number of records, so it can hold far more people
+ * than a {@link People} list.
+ * <p>
+ * Segments start small, sized from the capacity hint if one is given, and double as records are
+ * added until they reach their full size; further records then go into new segments.
+ * <p>
+ * A table is saved to a file with {@link #write(Path)} and reopened with {@link #open(Path)}, which
+ * maps the records and streets into memory without reading them; only the dictionary is loaded into
+ * the heap. Reopened tables are read-only.
+ * <p>
+ * Adding records is not thread-safe. Reading records is safe from any number of threads once all
+ * records have been added.
+ */
+public final class PersonTable {
+
+  private static final int   MAGIC          = 0x50504C54;                     // "PPLT"
+  private static final int   VERSION        = 2;
+  private static final int   HEADER         = 4 * Integer.BYTES + 4 * Long.BYTES;
+
+  /*
+   * Record layout. All int fields but AGE and BIRTHDATE hold dictionary codes or packed digits,
+   * with -1 for null. The street fields hold offsets into the string area, with -1 for null.
+   */
+  private static final int   ETHNICITY      = 0;
+  private static final int   GENDER         = 1;
+  private static final int   FLAGS          = 2;
+  private static final int   AGE            = 4;
+  private static final int   SURNAME        = 8;
+  private static final int   GIVEN_NAME     = 12;
+  private static final int   MIDDLE_INIT    = 16;
+  private static final int   BIRTHDATE      = 20;
+  private static final int   SSN            = 24;
+  private static final int   HOME           = 28;
+  private static final int   WORK           = 40;
+  private static final int   HOME_STREET    = 56;
+  private static final int   WORK_STREET    = 64;
+  private static final int   HOME_PHONE     = 72;
+  private static final int   WORK_PHONE     = 80;
+  private static final int   MOBILE_PHONE   = 88;
+
+  /**
+   * The size in bytes of a single record.
+   */
+  public static final int    RECORD         = 96;
+
+  // offsets within an address
+  private static final int   CITY           = 0;
+  private static final int   STATE          = 4;
+  private static final int   ZIPCODE        = 8;
+
+  // bits of the flags byte
+  private static final int   HOME_PRESENT   = 1;
+  private static final int   HOME_PO_BOX    = 2;
+  private static final int   WORK_PRESENT   = 4;
+  private static final int   WORK_PO_BOX    = 8;
+
+  // record segments hold up to SEGMENT_SIZE records and start with at least MIN_RECORDS
+  private static final int   SEGMENT_SHIFT  = 20;
+  private static final int   SEGMENT_SIZE   = 1 << SEGMENT_SHIFT;
+  private static final int   SEGMENT_MASK   = SEGMENT_SIZE - 1;
+  private static final int   MIN_RECORDS    = 1024;
+
+  /*
+   * String area segments hold up to STRING_SIZE bytes and start with at least MIN_STRINGS bytes.
+   * A string is stored as its UTF-8 length in two bytes followed by its bytes, and never spans two
+   * segments. STREET_BYTES is the expected size of the streets of a single person.
+   */
+  private static final int   STRING_SHIFT   = 24;
+  private static final int   STRING_SIZE    = 1 << STRING_SHIFT;
+  private static final int   STRING_MASK    = STRING_SIZE - 1;
+  private static final int   MIN_STRINGS    = 1 << 16;
+  private static final int   STREET_BYTES   = 48;
+
+  private static final Ethnicity[] ETHNICITIES = Ethnicity.values();
+  private static final Gender[]    GENDERS     = Gender.values();
+
+  private final StringDictionary dictionary;
+  private final List<ByteBuffer> segments;
+  private final List<ByteBuffer> strings;
+  private final boolean          readOnly;
+  private final long             capacity;
+  private long                   size;
+  private long                   stringEnd;
+
+  /**
+   * Constructs an empty table.
+   */
+  public PersonTable() {
+
+    this(0);
+  }
+
+  /**
+   * Constructs an empty table sized for the given number of records. The hint only sets the size
+   * of the first segments; the table still grows past it.
+   *
+   * @param capacity the expected number of records
+   */
+  public PersonTable(long capacity) {
+
+    this(new StringDictionary(), new ArrayList<ByteBuffer>(), new ArrayList<ByteBuffer>(), 0, 0,
+        false, capacity);
+  }
+
+  /**
+   * Constructs a table over the given segments.
+   *
+   * @param dictionary the dictionary of the low-cardinality string values
+   * @param segments   the record segments
+   * @param strings    the string area segments
+   * @param size       the number of records
+   * @param stringEnd  the number of bytes used in the string area
+   * @param readOnly   <b>{@code true}</b> if records cannot be added
+   * @param capacity   the expected number of records
+   */
+  private PersonTable(StringDictionary dictionary, List<ByteBuffer> segments,
+      List<ByteBuffer> strings, long size, long stringEnd, boolean readOnly, long capacity) {
+
+    this.dictionary = dictionary;
+    this.segments = segments;
+    this.strings = strings;
+    this.size = size;
+    this.stringEnd = stringEnd;
+    this.readOnly = readOnly;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns a table holding the given people.
+   *
+   * @param  people                   the people to store
+   *
+   * @return                          a new table
+   *
+   * @throws IllegalArgumentException if an SSN or phone number cannot be packed
+   */
+  public static PersonTable of(People people) {
+
+    var table = new PersonTable(people.getList().size());
+    for (var person : people.getList()) {
+      table.add(person);
+    }
+    return table;
+  }
+
+  /**
+   * Opens a table saved by {@link #write(Path)}. The records and streets are memory-mapped read-only
+   * and stay valid after this method returns.
+   *
+   * @param  path        the table file
+   *
+   * @return             the read-only table
+   *
+   * @throws IOException if the file cannot be read or is not a person table
+   */
+  public static PersonTable open(Path path) throws IOException {
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != RECORD) {
+        throw new IOException("Not a person table: " + path);
+      }
+      header.getInt();
+      var size = header.getLong();
+      var stringStart = header.getLong();
+      var stringEnd = header.getLong();
+      var end = header.getLong();
+
+      var segments = new ArrayList<ByteBuffer>();
+      for (long first = 0; first < size; first += SEGMENT_SIZE) {
+        var count = Math.min(SEGMENT_SIZE, size - first);
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY, HEADER + first * RECORD,
+            count * RECORD).order(ByteOrder.LITTLE_ENDIAN));
+      }
+
+      var strings = new ArrayList<ByteBuffer>();
+      for (long first = 0; first < stringEnd; first += STRING_SIZE) {
+        strings.add(channel.map(FileChannel.MapMode.READ_ONLY, stringStart + first,
+            Math.min(STRING_SIZE, stringEnd - first)).order(ByteOrder.LITTLE_ENDIAN));
+      }
+
+      var values = channel.map(FileChannel.MapMode.READ_ONLY, end, channel.size() - end)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      var dictionary = StringDictionary.read(values);
+      return new PersonTable(dictionary, segments, strings, size, stringEnd, true, size);
+    }
+  }
+
+  /**
+   * Saves the table to the given file.
+   *
+   * @param  path        the file to write
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path path) throws IOException {
+
+    var stringStart = HEADER + size * RECORD;
+    var end = stringStart + stringEnd;
+    var header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(RECORD).putInt(0);
+    header.putLong(size).putLong(stringStart).putLong(stringEnd).putLong(end);
+    header.flip();
+
+    var values = ByteBuffer.allocate(dictionary.byteSize()).order(ByteOrder.LITTLE_ENDIAN);
+    dictionary.write(values);
+    values.flip();
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, header, 0);
+      for (var i = 0; i < segments.size(); i++) {
+        var first = (long) i * SEGMENT_SIZE;
+        var count = Math.min(SEGMENT_SIZE, size - first);
+        writeFully(channel, segments.get(i).duplicate().position(0).limit((int) count * RECORD),
+            HEADER + first * RECORD);
+      }
+      // the unused tail of a string segment is left as a hole, so each one starts at its offset
+      for (var i = 0; i < strings.size(); i++) {
+        var first = (long) i * STRING_SIZE;
+        var length = Math.min(strings.get(i).capacity(), stringEnd - first);
+        writeFully(channel, strings.get(i).duplicate().position(0).limit((int) length),
+            stringStart + first);
+      }
+      writeFully(channel, values, end);
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of the buffer to the channel, starting at the given file position.
+   *
+   * @param  channel     the channel to write
+   * @param  buffer      the bytes to write
+   * @param  position    the file position of the first byte
+   *
+   * @throws IOException if the bytes cannot be written
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Adds a person to the end of the table.
+   *
+   * @param  person                   the person to add
+   *
+   * @return                          the index of the new record
+   *
+   * @throws IllegalArgumentException if the SSN or a phone number cannot be packed, or a street is
+   *                                  longer than 65535 UTF-8 bytes
+   * @throws IllegalStateException    if the table is read-only
+   */
+  public long add(Person person) {
+
+    if (readOnly) {
+      throw new IllegalStateException("Person table is read-only");
+    }
+
+    // pack everything that can fail before writing anything
+    var ssn = packSsn(person.ssn);
+    var homePhone = PackedPhoneNumber.pack(person.homePhone);
+    var workPhone = PackedPhoneNumber.pack(person.workPhone);
+    var mobilePhone = PackedPhoneNumber.pack(person.mobilePhone);
+    var homeStreet = streetBytes(person.home);
+    var workStreet = streetBytes(person.work);
+
+    var index = size;
+    var buffer = segmentFor(index);
+    var base = offset(index);
+
+    var flags = 0;
+    if (person.home != null) {
+      flags |= HOME_PRESENT | (person.home.poBox ? HOME_PO_BOX : 0);
+    }
+    if (person.work != null) {
+      flags |= WORK_PRESENT | (person.work.poBox ? WORK_PO_BOX : 0);
+    }
+
+    buffer.put(base + ETHNICITY,
+        (byte) ((person.ethnicity == null) ? -1 : person.ethnicity.ordinal()));
+    buffer.put(base + GENDER, (byte) ((person.gender == null) ? -1 : person.gender.ordinal()));
+    buffer.put(base + FLAGS, (byte) flags);
+    buffer.putInt(base + AGE, person.age);
+    buffer.putInt(base + SURNAME, dictionary.encode(person.surname));
+    buffer.putInt(base + GIVEN_NAME, dictionary.encode(person.givenName));
+    buffer.putInt(base + MIDDLE_INIT, dictionary.encode(person.middleInit));
+    buffer.putInt(base + BIRTHDATE, (person.birthdate == null) ? CompactPerson.NO_DATE
+        : (int) person.birthdate.toEpochDay());
+    buffer.putInt(base + SSN, ssn);
+    putAddress(buffer, base + HOME, person.home);
+    putAddress(buffer, base + WORK, person.work);
+    buffer.putLong(base + HOME_STREET, putString(homeStreet));
+    buffer.putLong(base + WORK_STREET, putString(workStreet));
+    buffer.putLong(base + HOME_PHONE, homePhone);
+    buffer.putLong(base + WORK_PHONE, workPhone);
+    buffer.putLong(base + MOBILE_PHONE, mobilePhone);
+
+    size++;
+    return index;
+  }
+
+  /**
+   * Returns the segment that receives the record at the given index. A new segment is added when
+   * the index starts one, and the last segment is doubled, up to its full size, when it is full.
+   *
+   * @param  index the index of the new record
+   *
+   * @return       the segment buffer
+   */
+  private ByteBuffer segmentFor(long index) {
+
+    if ((index & SEGMENT_MASK) == 0) {
+      var expected = Math.min(Math.max(capacity - index, MIN_RECORDS), SEGMENT_SIZE);
+      segments.add(allocate((int) expected * RECORD));
+    }
+
+    var last = segments.size() - 1;
+    var buffer = segments.get(last);
+    var end = offset(index) + RECORD;
+    if (end > buffer.capacity()) {
+      buffer = grow(buffer, end, SEGMENT_SIZE * RECORD);
+      segments.set(last, buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Encodes the street of an address.
+   *
+   * @param  address                  the address; may be null
+   *
+   * @return                          the UTF-8 bytes of the street; null if there is none
+   *
+   * @throws IllegalArgumentException if the street is longer than 65535 UTF-8 bytes
+   */
+  private static byte[] streetBytes(Address address) {
+
+    if (address == null || address.street == null) {
+      return null;
+    }
+
+    var bytes = address.street.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IllegalArgumentException("Street too long: " + bytes.length + " bytes");
+    }
+    return bytes;
+  }
+
+  /**
+   * Appends a string to the string area. A string that does not fit in the rest of the last
+   * segment starts a new one.
+   *
+   * @param  bytes the UTF-8 bytes of the string; may be null
+   *
+   * @return       the offset of the string; -1 if null
+   */
+  private long putString(byte[] bytes) {
+
+    if (bytes == null) {
+      return -1;
+    }
+
+    var length = Short.BYTES + bytes.length;
+    var position = (int) (stringEnd & STRING_MASK);
+    if (position + length > STRING_SIZE) {
+      stringEnd += STRING_SIZE - position;
+      position = 0;
+    }
+
+    var index = (int) (stringEnd >>> STRING_SHIFT);
+    if (index == strings.size()) {
+      var expected = Math.max(capacity - size, 0) * STREET_BYTES;
+      strings.add(allocate((int) Math.min(Math.max(expected, MIN_STRINGS), STRING_SIZE)));
+    }
+    var buffer = strings.get(index);
+    if (position + length > buffer.capacity()) {
+      buffer = grow(buffer, position + length, STRING_SIZE);
+      strings.set(index, buffer);
+    }
+
+    buffer.putShort(position, (short) bytes.length);
+    for (var i = 0; i < bytes.length; i++) {
+      buffer.put(position + Short.BYTES + i, bytes[i]);
+    }
+
+    var offset = stringEnd;
+    stringEnd += length;
+    return offset;
+  }
+
+  /**
+   * Reads a string from the string area.
+   *
+   * @param  offset the offset of the string; -1 for null
+   *
+   * @return        the string; null if the offset is -1
+   */
+  private String getString(long offset) {
+
+    if (offset < 0) {
+      return null;
+    }
+
+    var buffer = strings.get((int) (offset >>> STRING_SHIFT));
+    var position = (int) (offset & STRING_MASK);
+    var bytes = new byte[buffer.getShort(position) & 0xFFFF];
+    buffer.duplicate().position(position + Short.BYTES).get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Allocates a zeroed, little-endian direct buffer.
+   *
+   * @param  bytes the size of the buffer
+   *
+   * @return       the new buffer
+   */
+  private static ByteBuffer allocate(int bytes) {
+
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Copies a buffer into one at least twice its size, up to the given limit, and large enough to
+   * hold the given number of bytes.
+   *
+   * @param  buffer the buffer to grow
+   * @param  needed the number of bytes the new buffer must hold
+   * @param  limit  the largest size of the new buffer
+   *
+   * @return        the new buffer
+   */
+  private static ByteBuffer grow(ByteBuffer buffer, int needed, int limit) {
+
+    var bytes = buffer.capacity();
+    while (bytes < needed) {
+      bytes = (int) Math.min(2L * bytes, limit);
+    }
+
+    var grown = allocate(bytes);
+    grown.put(buffer.duplicate().clear());
+    grown.clear();
+    return grown;
+  }
+
+  /**
+   * Writes the dictionary codes of an address. The street is written to the string area.
+   *
+   * @param buffer  the segment to write
+   * @param offset  the offset of the address
+   * @param address the address to write; may be null
+   */
+  private void putAddress(ByteBuffer buffer, int offset, Address address) {
+
+    var missing = (address == null);
+    buffer.putInt(offset + CITY, missing ? -1 : dictionary.encode(address.city));
+    buffer.putInt(offset + STATE, missing ? -1 : dictionary.encode(address.state));
+    buffer.putInt(offset + ZIPCODE, missing ? -1 : dictionary.encode(address.zipcode));
+  }
+
+  /**
+   * Returns the number of records in the table.
+   *
+   * @return the number of records
+   */
+  public long size() {
+
+    return size;
+  }
+
+  /**
+   * Returns the dictionary holding the names, cities, states and ZIP codes of the table.
+   *
+   * @return the string dictionary
+   */
+  public StringDictionary dictionary() {
+
+    return dictionary;
+  }
+
+  /**
+   * Rebuilds the {@link Person} object of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       a new person object
+   */
+  public Person get(long index) {
+
+    var buffer = segment(index);
+    var base = offset(index);
+    var flags = buffer.get(base + FLAGS);
+
+    var person = new Person();
+    person.ethnicity = ethnicity(buffer, base);
+    person.gender = gender(buffer, base);
+    person.surname = dictionary.decode(buffer.getInt(base + SURNAME));
+    person.givenName = dictionary.decode(buffer.getInt(base + GIVEN_NAME));
+    person.middleInit = dictionary.decode(buffer.getInt(base + MIDDLE_INIT));
+    person.birthdate = getBirthdate(index);
+    person.age = buffer.getInt(base + AGE);
+    person.ssn = unpackSsn(buffer.getInt(base + SSN));
+    person.home = ((flags & HOME_PRESENT) == 0) ? null
+        : address(buffer, base + HOME, base + HOME_STREET, (flags & HOME_PO_BOX) != 0);
+    person.work = ((flags & WORK_PRESENT) == 0) ? null
+        : address(buffer, base + WORK, base + WORK_STREET, (flags & WORK_PO_BOX) != 0);
+    person.homePhone = PackedPhoneNumber.unpack(buffer.getLong(base + HOME_PHONE));
+    person.workPhone = PackedPhoneNumber.unpack(buffer.getLong(base + WORK_PHONE));
+    person.mobilePhone = PackedPhoneNumber.unpack(buffer.getLong(base + MOBILE_PHONE));
+    return person;
+  }
+
+  /**
+   * Returns a sequential stream of the records as {@link Person} objects.
+   *
+   * @return a stream of the records
+   */
+  public Stream<Person> stream() {
+
+    return LongStream.range(0, size).mapToObj(this::get);
+  }
+
+  /**
+   * Returns a {@link People} list holding all records of the table.
+   *
+   * @return                       a new list of people
+   *
+   * @throws IllegalStateException if the table is too large for a list
+   */
+  public People toPeople() {
+
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too many records for a list: " + size);
+    }
+
+    var people = new People((int) size);
+    for (long i = 0; i < size; i++) {
+      people.add(get(i));
+    }
+    return people;
+  }
+
+  /**
+   * Returns the gender of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the gender
+   */
+  public Gender getGender(long index) {
+
+    return gender(segment(index), offset(index));
+  }
+
+  /**
+   * Returns the age of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the age
+   */
+  public int getAge(long index) {
+
+    return segment(index).getInt(offset(index) + AGE);
+  }
+
+  /**
+   * Returns the surname of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the surname
+   */
+  public String getSurname(long index) {
+
+    return dictionary.decode(segment(index).getInt(offset(index) + SURNAME));
+  }
+
+  /**
+   * Returns the birth date of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the birth date
+   */
+  public LocalDate getBirthdate(long index) {
+
+    var day = getBirthdateEpochDay(index);
+    return (day == CompactPerson.NO_DATE) ? null : LocalDate.ofEpochDay(day);
+  }
+
+  /**
+   * Returns the birth date of the given record as an epoch day.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the epoch day of the birth date; {@link CompactPerson#NO_DATE} if none
+   */
+  public int getBirthdateEpochDay(long index) {
+
+    return segment(index).getInt(offset(index) + BIRTHDATE);
+  }
+
+  /**
+   * Returns the state of the home address of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the home state
+   */
+  public String getHomeState(long index) {
+
+    return dictionary.decode(segment(index).getInt(offset(index) + HOME + STATE));
+  }
+
+  /**
+   * Returns the ZIP code of the home address of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the home ZIP code
+   */
+  public String getHomeZipcode(long index) {
+
+    return dictionary.decode(segment(index).getInt(offset(index) + HOME + ZIPCODE));
+  }
+
+  /**
+   * Returns the packed home phone number of the given record.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the packed home phone number
+   */
+  public long getPackedHomePhone(long index) {
+
+    return segment(index).getLong(offset(index) + HOME_PHONE);
+  }
+
+  /**
+   * Returns the segment holding the given record.
+   *
+   * @param  index                     the index of the record
+   *
+   * @return                           the segment buffer
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  private ByteBuffer segment(long index) {
+
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Invalid record index: " + index);
+    }
+    return segments.get((int) (index >>> SEGMENT_SHIFT));
+  }
+
+  /**
+   * Returns the offset of the given record within its segment.
+   *
+   * @param  index the index of the record
+   *
+   * @return       the byte offset of the record
+   */
+  private static int offset(long index) {
+
+    return (int) (index & SEGMENT_MASK) * RECORD;
+  }
+
+  /**
+   * Decodes the ethnicity of a record.
+   *
+   * @param  buffer the segment holding the record
+   * @param  base   the offset of the record
+   *
+   * @return        the ethnicity
+   */
+  private static Ethnicity ethnicity(ByteBuffer buffer, int base) {
+
+    var ordinal = buffer.get(base + ETHNICITY);
+    return (ordinal < 0) ? null : ETHNICITIES[ordinal];
+  }
+
+  /**
+   * Decodes the gender of a record.
+   *
+   * @param  buffer the segment holding the record
+   * @param  base   the offset of the record
+   *
+   * @return        the gender
+   */
+  private static Gender gender(ByteBuffer buffer, int base) {
+
+    var ordinal = buffer.get(base + GENDER);
+    return (ordinal < 0) ? null : GENDERS[ordinal];
+  }
+
+  /**
+   * Decodes an address of a record.
+   *
+   * @param  buffer the segment holding the record
+   * @param  offset the offset of the address
+   * @param  street the offset of the street field
+   * @param  poBox  the P.O. Box indicator
+   *
+   * @return        a new address
+   */
+  private Address address(ByteBuffer buffer, int offset, int street, boolean poBox) {
+
+    var address = new Address(getString(buffer.getLong(street)),
+        dictionary.decode(buffer.getInt(offset + CITY)),
+        dictionary.decode(buffer.getInt(offset + STATE)),
+        dictionary.decode(buffer.getInt(offset + ZIPCODE)));
+    address.poBox = poBox;
+    return address;
+  }
+
+  /**
+   * Packs an SSN of the form {@code ###-##-####} into its nine-digit value.
+   *
+   * @param  ssn                      the SSN to pack; may be null
+   *
+   * @return                          the packed SSN; -1 if null
+   *
+   * @throws IllegalArgumentException if the SSN is not in the expected form
+   */
+  private static int packSsn(String ssn) {
+
+    if (ssn == null) {
+      return -1;
+    }
+
+    if (ssn.length() != 11 || ssn.charAt(3) != '-' || ssn.charAt(6) != '-') {
+      throw new IllegalArgumentException("Invalid SSN: " + ssn);
+    }
+
+    var value = 0;
+    for (var i = 0; i < 11; i++) {
+      var ch = ssn.charAt(i);
+      if (i == 3 || i == 6) {
+        continue;
+      }
+      if (ch < '0' || ch > '9') {
+        throw new IllegalArgumentException("Invalid SSN: " + ssn);
+      }
+      value = value * 10 + (ch - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Formats a packed SSN.
+   *
+   * @param  value the packed SSN
+   *
+   * @return       the SSN in the form {@code ###-##-####}; null if the value is -1
+   */
+  private static String unpackSsn(int value) {
+
+    if (value < 0) {
+      return null;
+    }
+
+    var chars = new char[11];
+    for (var i = 10; i >= 0; i--) {
+      if (i == 3 || i == 6) {
+        chars[i] = '-';
+      } else {
+        chars[i] = (char) ('0' + value % 10);
+        value /= 10;
+      }
+    }
+    return new String(chars);
+  }
+}
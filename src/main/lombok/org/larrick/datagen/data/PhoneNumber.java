@@ -6,7 +6,14 @@
 
 package org.larrick.datagen.data;
 
-import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
 import java.io.Serializable;
 import lombok.Data;
 
@@ -16,9 +23,16 @@ import lombok.Data;
  * number (or station code).
  */
 @Data
+@JsonSerialize(using = PhoneNumber.Serializer.class)
 public final class PhoneNumber implements Serializable, Cloneable {
 
-  private static final long serialVersionUID = 8277887720189909314L;
+  private static final long                serialVersionUID = 8277887720189909314L;
+
+  /*
+   * Per-thread buffer the phone number is formatted into, grown when a number does not fit.
+   */
+  private static final ThreadLocal<char[]> SCRATCH          = ThreadLocal
+      .withInitial(() -> new char[16]);
 
   /**
    * Constructs an empty phone number object.
@@ -73,7 +87,7 @@ public final class PhoneNumber implements Serializable, Cloneable {
 
   /**
    * Obtains an instance of {@code PhoneNumber} from a text string. The string must be in the format
-   * {@code (###) ###-####} or {@code ###-####}.
+   * {@code (###) ###-####} or {@code ###-####}, where each {@code #} is a decimal digit.
    *
    * @param  text                     the test to parse
    *
@@ -84,26 +98,45 @@ public final class PhoneNumber implements Serializable, Cloneable {
   public static PhoneNumber parse(CharSequence text) {
 
     // If the string is null or empty, return an empty instance.
-    if (isNull(text.toString())) {
+    if (text == null || text.length() == 0) {
       return new PhoneNumber();
     }
 
-    PhoneNumber ret = null;
-    try {
-      String phone = text.toString();
-      if (phone.length() > 8) {
-        String[] vals = phone.split("\\(|\\) |-");
-        ret = new PhoneNumber(vals[1], vals[2], vals[3]);
-      } else {
-        String[] vals = phone.split("-");
-        ret = new PhoneNumber(null, vals[0], vals[1]);
-      }
+    // (###) ###-####
+    if (text.length() == 14 && text.charAt(0) == '(' && text.charAt(4) == ')'
+        && text.charAt(5) == ' ' && text.charAt(9) == '-' && digits(text, 1, 4)
+        && digits(text, 6, 9) && digits(text, 10, 14)) {
+      return new PhoneNumber(text.subSequence(1, 4).toString(), text.subSequence(6, 9).toString(),
+          text.subSequence(10, 14).toString());
+    }
 
-    } catch (ArrayIndexOutOfBoundsException iob) {
-      throw new IllegalArgumentException("Invalid phone number format: " + text.toString());
+    // ###-####
+    if (text.length() == 8 && text.charAt(3) == '-' && digits(text, 0, 3) && digits(text, 4, 8)) {
+      return new PhoneNumber(null, text.subSequence(0, 3).toString(),
+          text.subSequence(4, 8).toString());
     }
 
-    return ret;
+    throw new IllegalArgumentException("Invalid phone number format: " + text.toString());
+  }
+
+  /**
+   * Returns {@code true} if the given range of characters are all decimal digits.
+   *
+   * @param  text  the text to test
+   * @param  start the index of the first character
+   * @param  end   the index after the last character
+   *
+   * @return       true if all digits
+   */
+  private static boolean digits(CharSequence text, int start, int end) {
+
+    for (var i = start; i < end; i++) {
+      var ch = text.charAt(i);
+      if (ch < '0' || ch > '9') {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -113,7 +146,6 @@ public final class PhoneNumber implements Serializable, Cloneable {
    * @return string representation of the phone number
    */
   @Override
-  @JsonValue
   public String toString() {
 
     // If prefix is empty assume whole object is empty
@@ -121,7 +153,168 @@ public final class PhoneNumber implements Serializable, Cloneable {
       return "";
     }
 
-    return (isNull(areaCode) ? "" : "(" + areaCode + ") ") + prefix + "-" + number;
+    var chars = buffer();
+    return new String(chars, 0, formatTo(chars));
+  }
+
+  /**
+   * Appends the string representation of this phone number to the given builder, without creating
+   * an intermediate string.
+   *
+   * @param  builder the builder to append to
+   *
+   * @return         the given builder
+   *
+   * @see            #toString()
+   */
+  public StringBuilder appendTo(StringBuilder builder) {
+
+    if (isNull(prefix)) {
+      return builder;
+    }
+
+    if (!isNull(areaCode)) {
+      builder.append('(').append(areaCode).append(") ");
+    }
+    return builder.append(prefix).append('-').append(number);
+  }
+
+  /**
+   * Returns this phone number packed into a single {@code long}.
+   *
+   * @return                          the packed phone number
+   *
+   * @throws IllegalArgumentException if the parts of the number are not all digits of the right
+   *                                  length
+   *
+   * @see                             PackedPhoneNumber
+   */
+  public long toPacked() {
+
+    return PackedPhoneNumber.pack(this);
+  }
+
+  /**
+   * Obtains an instance of {@code PhoneNumber} from a packed phone number.
+   *
+   * @param  packed the packed phone number
+   *
+   * @return        a new phone number object
+   *
+   * @see           PackedPhoneNumber
+   */
+  public static PhoneNumber ofPacked(long packed) {
+
+    return PackedPhoneNumber.unpack(packed);
+  }
+
+  /**
+   * Returns the per-thread buffer for formatting, large enough for this phone number, which must
+   * have a prefix.
+   *
+   * @return the buffer of the current thread
+   */
+  private char[] buffer() {
+
+    var length = (isNull(areaCode) ? 0 : areaCode.length() + 3) + prefix.length() + 1
+        + String.valueOf(number).length();
+    var chars = SCRATCH.get();
+    if (chars.length < length) {
+      chars = new char[length];
+      SCRATCH.set(chars);
+    }
+    return chars;
+  }
+
+  /**
+   * Writes the string representation of this phone number, which must have a prefix, to the start
+   * of the given buffer.
+   *
+   * @param  chars the buffer, as returned by {@link #buffer()}
+   *
+   * @return       the number of characters written
+   */
+  private int formatTo(char[] chars) {
+
+    var line = String.valueOf(number);
+    var hasArea = !isNull(areaCode);
+    var pos = 0;
+    if (hasArea) {
+      chars[pos++] = '(';
+      areaCode.getChars(0, areaCode.length(), chars, pos);
+      pos += areaCode.length();
+      chars[pos++] = ')';
+      chars[pos++] = ' ';
+    }
+    prefix.getChars(0, prefix.length(), chars, pos);
+    pos += prefix.length();
+    chars[pos++] = '-';
+    line.getChars(0, line.length(), chars, pos);
+    return pos + line.length();
+  }
+
+  /**
+   * Jackson serializer that formats a phone number into a per-thread buffer and writes it straight
+   * to the generator, without building a {@code String} or a new array.
+   */
+  public static final class Serializer extends StdSerializer<PhoneNumber> {
+
+    private static final long serialVersionUID = -2384520190713829075L;
+
+    /**
+     * Constructs the serializer.
+     */
+    public Serializer() {
+      super(PhoneNumber.class);
+    }
+
+    /**
+     * Writes the phone number as a string value.
+     */
+    @Override
+    public void serialize(PhoneNumber value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+
+      if (isNull(value.prefix)) {
+        gen.writeString("");
+        return;
+      }
+
+      var chars = value.buffer();
+      gen.writeString(chars, 0, value.formatTo(chars));
+    }
+  }
+
+  /**
+   * Jackson deserializer that parses the string representation of a phone number, as
+   * {@link org.larrick.datagen.data.xml.PhoneAdapter} does for JAXB. Registered by {@link Mappers}.
+   */
+  public static final class Deserializer extends StdDeserializer<PhoneNumber> {
+
+    private static final long serialVersionUID = 5326594411062873151L;
+
+    /**
+     * Constructs the deserializer.
+     */
+    public Deserializer() {
+      super(PhoneNumber.class);
+    }
+
+    /**
+     * Reads a phone number from a string value.
+     */
+    @Override
+    public PhoneNumber deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+
+      var text = parser.getValueAsString();
+      try {
+        return parse(text);
+      } catch (IllegalArgumentException exc) {
+        return (PhoneNumber) context.handleWeirdStringValue(PhoneNumber.class, text,
+            exc.getMessage());
+      }
+    }
   }
 
   /**
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary that maps repeated string values to dense integer codes and back. Each distinct value
+ * is stored once, so columns of codes can stand in for columns of strings. A {@code null} value is
+ * always encoded as {@code -1}.
+ * <p>
+ * The dictionary is not synchronized. Encoding from more than one thread must be guarded by the
+ * caller; decoding is safe once all encoding is finished.
+ */
+public final class StringDictionary {
+
+  private final Map<String, Integer> codes;
+  private String[]                   values;
+  private int                        size = 0;
+
+  /**
+   * Constructs an empty dictionary.
+   */
+  public StringDictionary() {
+    this(64);
+  }
+
+  /**
+   * Constructs an empty dictionary with room for the given number of values.
+   *
+   * @param capacity the initial capacity
+   */
+  public StringDictionary(int capacity) {
+
+    codes = new HashMap<String, Integer>(capacity);
+    values = new String[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Returns the code for the given value, adding the value to the dictionary if needed.
+   *
+   * @param  value the value to encode
+   *
+   * @return       the code of the value; -1 if the value is null
+   */
+  public int encode(String value) {
+
+    if (value == null) {
+      return -1;
+    }
+
+    var code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size] = value;
+    codes.put(value, size);
+    return size++;
+  }
+
+  /**
+   * Returns the code for the given value without adding it to the dictionary.
+   *
+   * @param  value the value to look up
+   *
+   * @return       the code of the value; -1 if the value is null or not in the dictionary
+   */
+  public int lookup(String value) {
+
+    if (value == null) {
+      return -1;
+    }
+
+    var code = codes.get(value);
+    return (code == null) ? -1 : code;
+  }
+
+  /**
+   * Returns the value for the given code.
+   *
+   * @param  code the code to decode
+   *
+   * @return      the value of the code; null if the code is -1
+   */
+  public String decode(int code) {
+
+    return (code < 0) ? null : values[code];
+  }
+
+  /**
+   * Returns the number of distinct values in the dictionary.
+   *
+   * @return the number of values
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * Reads a dictionary written by {@link #write(ByteBuffer)} from the given buffer.
+   *
+   * @param  in                       the buffer positioned at the start of the dictionary
+   *
+   * @return                          the dictionary read from the buffer
+   *
+   * @throws BufferUnderflowException if the buffer is truncated
+   */
+  static StringDictionary read(ByteBuffer in) {
+
+    var count = in.getInt();
+    var dictionary = new StringDictionary(count);
+    for (var i = 0; i < count; i++) {
+      var bytes = new byte[in.getInt()];
+      in.get(bytes);
+      dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+    }
+    return dictionary;
+  }
+
+  /**
+   * Writes the values of this dictionary, in code order, to the given buffer.
+   *
+   * @param  out                     the buffer to write
+   *
+   * @throws BufferOverflowException if the buffer is smaller than {@link #byteSize()}
+   */
+  void write(ByteBuffer out) {
+
+    out.putInt(size);
+    for (var i = 0; i < size; i++) {
+      var bytes = values[i].getBytes(StandardCharsets.UTF_8);
+      out.putInt(bytes.length);
+      out.put(bytes);
+    }
+  }
+
+  /**
+   * Returns the number of bytes {@link #write(ByteBuffer)} needs for this dictionary.
+   *
+   * @return the size of the binary form of the dictionary
+   */
+  int byteSize() {
+
+    var bytes = Integer.BYTES;
+    for (var i = 0; i < size; i++) {
+      bytes += Integer.BYTES + values[i].getBytes(StandardCharsets.UTF_8).length;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,766 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Schema-specific parser for the {@code ZipcodeData.csv} file. The parser scans the raw bytes of
+ * the file and fills {@link ZipcodeData} fields directly, without reflection or an intermediate
+ * token stream. It reads the same files as the Jackson {@code CsvMapper} setup it replaces:
+ * <ul>
+ * <li>leading comment lines start with {@code #} and are followed by a header row; columns are
+ * matched to fields by header name, in any order;</li>
+ * <li>values may be quoted, with {@code ""} for an embedded quote, and spaces around unquoted
+ * values are trimmed; values do not span lines;</li>
+ * <li>the city lists and area codes are comma-separated within a single value.</li>
+ * </ul>
+ * When the reader is asked for clean data, records that are decommissioned, have no population or
+ * are not {@link ZipcodeData#STANDARD} or {@link ZipcodeData#PO_BOX} are dropped from their raw
+ * bytes, before any object is allocated. Records that are kept are then passed to the filter, if
+ * one is given.
+ * <p>
+ * Records are independent lines, so the body of the file can be split at line boundaries and the
+ * parts parsed in parallel with {@link #read(ForkJoinPool)}. The filter must then be thread-safe.
+ */
+final class ZipcodeCsvReader {
+
+  // field numbers
+  private static final int          ZIPCODE        = 0;
+  private static final int          TYPE           = 1;
+  private static final int          DECOMMISSIONED = 2;
+  private static final int          CITY           = 3;
+  private static final int          ACCEPTABLE     = 4;
+  private static final int          UNACCEPTABLE   = 5;
+  private static final int          STATE          = 6;
+  private static final int          COUNTY         = 7;
+  private static final int          TIMEZONE       = 8;
+  private static final int          AREACODES      = 9;
+  private static final int          REGION         = 10;
+  private static final int          COUNTRY        = 11;
+  private static final int          LATITUDE       = 12;
+  private static final int          LONGITUDE      = 13;
+  private static final int          POPULATION     = 14;
+
+  /*
+   * Header names, indexed by field number.
+   */
+  private static final List<String> NAMES          = List.of("zipcode", "type", "decommissioned",
+      "city", "acceptableCities", "unacceptableCities", "state", "county", "timezone", "areacodes",
+      "region", "country", "latitude", "longitude", "population");
+
+  private static final byte[]       STANDARD       = ascii(ZipcodeData.STANDARD);
+  private static final byte[]       PO_BOX         = ascii(ZipcodeData.PO_BOX);
+  private static final byte[]       UNIQUE         = ascii(ZipcodeData.UNIQUE);
+  private static final byte[]       MILITARY       = ascii(ZipcodeData.MILITARY);
+
+  private static final int          CACHE_SIZE     = 8192;
+
+  /*
+   * The number of bytes below which a range of lines is parsed by a single task.
+   */
+  private static final int          CHUNK_SIZE     = 256 * 1024;
+
+  /*
+   * Powers of ten that are exact doubles, for parsing short decimal values.
+   */
+  private static final double[]     POWERS         = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  private final byte[]                 data;
+  private final int                    length;
+  private final int                    body;
+  private final int[]                  columns;
+  private final boolean                clean;
+  private final Predicate<ZipcodeData> filter;
+
+  /*
+   * Recently decoded ASCII values, by hash of their bytes, so that repeated values such as states,
+   * counties and cities are decoded once and share a single string. Racing updates from parallel
+   * reads only cost a cache miss, since every hit is checked against the bytes.
+   */
+  private final String[]               cache = new String[CACHE_SIZE];
+
+  /**
+   * Constructs a reader over the given file contents and parses the comments and header row.
+   *
+   * @param  data                     the bytes of the CSV file
+   * @param  length                   the number of bytes used
+   * @param  clean                    <b>{@code true}</b> to drop the records that
+   *                                  {@link ZipcodeDataServer#isValid(ZipcodeData)} certainly
+   *                                  rejects before building them
+   * @param  filter                   the test for records to keep; null to keep all records
+   *
+   * @throws IllegalArgumentException if the header row is missing or lacks a column
+   */
+  ZipcodeCsvReader(byte[] data, int length, boolean clean, Predicate<ZipcodeData> filter) {
+
+    this.data = data;
+    this.length = length;
+    this.clean = clean;
+    this.filter = filter;
+
+    // skip comments at the beginning of the file
+    var pos = 0;
+    while (pos < length && data[pos] == '#') {
+      pos = nextLine(pos);
+    }
+    if (pos >= length) {
+      throw new IllegalArgumentException("Missing header row");
+    }
+
+    // map each column of the header row to its field
+    var starts = new int[64];
+    var ends = new int[64];
+    var count = 0;
+    var lineEnd = lineEnd(pos);
+    while (count < starts.length) {
+      pos = scan(pos, lineEnd, starts, ends, count);
+      count++;
+      if (pos >= lineEnd) {
+        break;
+      }
+      pos++;
+    }
+
+    columns = new int[count];
+    var found = new boolean[NAMES.size()];
+    for (var i = 0; i < count; i++) {
+      var name = new String(data, starts[i], ends[i] - starts[i], StandardCharsets.UTF_8);
+      columns[i] = NAMES.indexOf(unquote(name));
+      if (columns[i] >= 0) {
+        found[columns[i]] = true;
+      }
+    }
+    for (var i = 0; i < found.length; i++) {
+      if (!found[i]) {
+        throw new IllegalArgumentException("Missing column \"" + NAMES.get(i) + "\"");
+      }
+    }
+
+    body = nextLine(lineEnd);
+  }
+
+  /**
+   * Returns the offset of the first record, just after the header row.
+   *
+   * @return the offset of the first record
+   */
+  int bodyStart() {
+
+    return body;
+  }
+
+  /**
+   * Returns the number of bytes of the file.
+   *
+   * @return the length of the file
+   */
+  int length() {
+
+    return length;
+  }
+
+  /**
+   * Returns the offset of the start of the line following the given offset.
+   *
+   * @param  pos an offset in the file
+   *
+   * @return     the offset just past the next line feed; the file length if there is none
+   */
+  int nextLine(int pos) {
+
+    while (pos < length && data[pos] != '\n') {
+      pos++;
+    }
+    return Math.min(pos + 1, length);
+  }
+
+  /**
+   * Parses all records of the file.
+   *
+   * @return                          the records kept by the filter, in file order
+   *
+   * @throws IllegalArgumentException if a numeric value is malformed
+   */
+  List<ZipcodeData> read() {
+
+    return read(body, length);
+  }
+
+  /**
+   * Parses all records of the file in parallel on the given pool. The body is split at line
+   * boundaries into ranges of about {@value #CHUNK_SIZE} bytes, which are parsed by separate tasks
+   * and joined in file order.
+   *
+   * @param  pool                     the pool running the tasks
+   *
+   * @return                          the records kept by the filter, in file order
+   *
+   * @throws IllegalArgumentException if a numeric value is malformed
+   */
+  List<ZipcodeData> read(ForkJoinPool pool) {
+
+    return pool.invoke(new ReadTask(body, length));
+  }
+
+  /**
+   * Parses the records of the lines starting within the given range. The start of the range must
+   * be the start of a line.
+   *
+   * @param  from                     the offset of the first line
+   * @param  to                       the end of the range
+   *
+   * @return                          the records kept by the filter, in file order
+   *
+   * @throws IllegalArgumentException if a numeric value is malformed
+   */
+  List<ZipcodeData> read(int from, int to) {
+
+    // one slot per field, and a last one for the values of unknown columns
+    var records = new ArrayList<ZipcodeData>((to - from) / 128 + 1);
+    var starts = new int[NAMES.size() + 1];
+    var ends = new int[NAMES.size() + 1];
+
+    var pos = from;
+    while (pos < to) {
+      var lineEnd = lineEnd(pos);
+      if (lineEnd > pos) {
+        Arrays.fill(starts, -1);
+        var column = 0;
+        while (column < columns.length) {
+          var field = columns[column];
+          pos = scan(pos, lineEnd, starts, ends, (field < 0) ? NAMES.size() : field);
+          column++;
+          if (pos >= lineEnd) {
+            break;
+          }
+          pos++;
+        }
+
+        if (!clean || accept(starts, ends)) {
+          var rec = record(starts, ends);
+          if (filter == null || filter.test(rec)) {
+            records.add(rec);
+          }
+        }
+      }
+      pos = nextLine(lineEnd);
+    }
+    return records;
+  }
+
+  /**
+   * Task that parses a range of lines, splitting it in two at a line boundary while it is larger
+   * than {@value #CHUNK_SIZE} bytes.
+   */
+  private final class ReadTask extends RecursiveTask<List<ZipcodeData>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int         from;
+    private final int         to;
+
+    /**
+     * Constructs a task for the lines starting within the given range.
+     *
+     * @param from the offset of the first line
+     * @param to   the end of the range
+     */
+    ReadTask(int from, int to) {
+
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Parses the range, forking the second half when the range is split.
+     *
+     * @return the records kept by the filter, in file order
+     */
+    @Override
+    protected List<ZipcodeData> compute() {
+
+      var middle = (to - from > CHUNK_SIZE) ? nextLine(from + (to - from) / 2) : to;
+      if (middle >= to) {
+        return read(from, to);
+      }
+
+      var second = new ReadTask(middle, to);
+      second.fork();
+      var records = new ReadTask(from, middle).compute();
+      records.addAll(second.join());
+      return records;
+    }
+  }
+
+  /**
+   * Tests the raw values of a record for the criteria of
+   * {@link ZipcodeDataServer#isValid(ZipcodeData)} that can be checked without building it.
+   *
+   * @param  starts the start offsets of the fields
+   * @param  ends   the end offsets of the fields
+   *
+   * @return        <b>{@code false}</b> if the record is certainly rejected
+   */
+  private boolean accept(int[] starts, int[] ends) {
+
+    if (starts[DECOMMISSIONED] >= 0 && parseInt(starts[DECOMMISSIONED],
+        ends[DECOMMISSIONED]) == ZipcodeData.DECOMMISSIONED) {
+      return false;
+    }
+    if (starts[POPULATION] < 0 || parseInt(starts[POPULATION], ends[POPULATION]) == 0) {
+      return false;
+    }
+    return matches(starts[TYPE], ends[TYPE], STANDARD) || matches(starts[TYPE], ends[TYPE], PO_BOX);
+  }
+
+  /**
+   * Builds the record from its raw field values. The PO Box flag is set from the type whether or
+   * not a filter is used.
+   *
+   * @param  starts the start offsets of the fields; -1 for a missing field
+   * @param  ends   the end offsets of the fields
+   *
+   * @return        a new record
+   */
+  private ZipcodeData record(int[] starts, int[] ends) {
+
+    var rec = new ZipcodeData();
+    rec.zipcode = string(starts[ZIPCODE], ends[ZIPCODE]);
+    rec.type = type(starts[TYPE], ends[TYPE]);
+    rec.poBox = ZipcodeData.PO_BOX.equals(rec.type);
+    rec.decommissioned = parseInt(starts[DECOMMISSIONED], ends[DECOMMISSIONED]);
+    rec.city = shared(starts[CITY], ends[CITY]);
+    rec.acceptableCities = list(starts[ACCEPTABLE], ends[ACCEPTABLE]);
+    rec.unacceptableCities = list(starts[UNACCEPTABLE], ends[UNACCEPTABLE]);
+    rec.state = shared(starts[STATE], ends[STATE]);
+    rec.county = shared(starts[COUNTY], ends[COUNTY]);
+    rec.timezone = shared(starts[TIMEZONE], ends[TIMEZONE]);
+    rec.areacodes = list(starts[AREACODES], ends[AREACODES]);
+    rec.region = shared(starts[REGION], ends[REGION]);
+    rec.country = shared(starts[COUNTRY], ends[COUNTRY]);
+    rec.latitude = parseDouble(starts[LATITUDE], ends[LATITUDE]);
+    rec.longitude = parseDouble(starts[LONGITUDE], ends[LONGITUDE]);
+    rec.population = parseInt(starts[POPULATION], ends[POPULATION]);
+    return rec;
+  }
+
+  /**
+   * Finds the bounds of the value starting at the given offset. Unquoted values are trimmed of
+   * spaces; quoted values keep their quotes, which are removed when the value is decoded.
+   *
+   * @param  pos     the offset of the value
+   * @param  lineEnd the end of the line
+   * @param  starts  the array receiving the start of the value
+   * @param  ends    the array receiving the end of the value
+   * @param  index   the index to set in the arrays
+   *
+   * @return         the offset of the separator after the value, or the end of the line
+   */
+  private int scan(int pos, int lineEnd, int[] starts, int[] ends, int index) {
+
+    while (pos < lineEnd && data[pos] == ' ') {
+      pos++;
+    }
+
+    if (pos < lineEnd && data[pos] == '"') {
+      var start = pos++;
+      while (pos < lineEnd) {
+        if (data[pos] == '"') {
+          if (pos + 1 < lineEnd && data[pos + 1] == '"') {
+            pos += 2;
+            continue;
+          }
+          break;
+        }
+        pos++;
+      }
+      starts[index] = start;
+      ends[index] = Math.min(pos + 1, lineEnd);
+      pos++;
+      while (pos < lineEnd && data[pos] != ',') {
+        pos++;
+      }
+      return pos;
+    }
+
+    var start = pos;
+    while (pos < lineEnd && data[pos] != ',') {
+      pos++;
+    }
+    var end = pos;
+    while (end > start && data[end - 1] == ' ') {
+      end--;
+    }
+    starts[index] = start;
+    ends[index] = end;
+    return pos;
+  }
+
+  /**
+   * Returns the end of the line starting at the given offset, before any carriage return.
+   *
+   * @param  pos the offset of the start of the line
+   *
+   * @return     the offset of the line terminator
+   */
+  private int lineEnd(int pos) {
+
+    while (pos < length && data[pos] != '\n') {
+      pos++;
+    }
+    if (pos > 0 && data[pos - 1] == '\r') {
+      pos--;
+    }
+    return pos;
+  }
+
+  /**
+   * Decodes a value as a string, removing quotes.
+   *
+   * @param  start the start of the value; -1 if the value is missing
+   * @param  end   the end of the value
+   *
+   * @return       the value; null if missing
+   */
+  private String string(int start, int end) {
+
+    if (start < 0) {
+      return null;
+    }
+
+    if (end > start && data[start] == '"') {
+      return unquote(decode(start, end));
+    }
+    return decode(start, end);
+  }
+
+  /**
+   * Decodes a value that is likely to repeat, returning the cached string when the same value was
+   * decoded before.
+   *
+   * @param  start the start of the value; -1 if the value is missing
+   * @param  end   the end of the value
+   *
+   * @return       the value; null if missing
+   */
+  private String shared(int start, int end) {
+
+    if (start < 0) {
+      return null;
+    }
+    if (end - start >= 2 && data[start] == '"' && data[end - 1] == '"') {
+      if (indexOf('"', start + 1, end - 1) >= 0) {
+        return string(start, end);
+      }
+      start++;
+      end--;
+    }
+
+    var hash = 0;
+    for (var i = start; i < end; i++) {
+      if (data[i] < 0) {
+        return decode(start, end);
+      }
+      hash = 31 * hash + data[i];
+    }
+
+    var slot = (hash ^ (hash >>> 13)) & (CACHE_SIZE - 1);
+    var cached = cache[slot];
+    if (cached != null && cached.length() == end - start) {
+      var i = 0;
+      while (i < cached.length() && cached.charAt(i) == data[start + i]) {
+        i++;
+      }
+      if (i == cached.length()) {
+        return cached;
+      }
+    }
+
+    var value = new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    cache[slot] = value;
+    return value;
+  }
+
+  /**
+   * Decodes the record type, sharing the constant strings of the known types.
+   *
+   * @param  start the start of the value; -1 if the value is missing
+   * @param  end   the end of the value
+   *
+   * @return       the record type; null if missing
+   */
+  private String type(int start, int end) {
+
+    if (matches(start, end, STANDARD)) {
+      return ZipcodeData.STANDARD;
+    } else if (matches(start, end, PO_BOX)) {
+      return ZipcodeData.PO_BOX;
+    } else if (matches(start, end, UNIQUE)) {
+      return ZipcodeData.UNIQUE;
+    } else if (matches(start, end, MILITARY)) {
+      return ZipcodeData.MILITARY;
+    }
+    return shared(start, end);
+  }
+
+  /**
+   * Decodes a comma-separated list value. Each element is trimmed of spaces.
+   *
+   * @param  start the start of the value; -1 if the value is missing
+   * @param  end   the end of the value
+   *
+   * @return       the list of elements; null if the value is missing
+   */
+  private List<String> list(int start, int end) {
+
+    if (start < 0) {
+      return null;
+    }
+    if (end - start >= 2 && data[start] == '"' && data[end - 1] == '"') {
+      if (indexOf('"', start + 1, end - 1) >= 0) {
+        return split(string(start, end));
+      }
+      start++;
+      end--;
+    }
+    if (start == end) {
+      return new ArrayList<String>(0);
+    }
+
+    var list = new ArrayList<String>(4);
+    while (true) {
+      var comma = indexOf(',', start, end);
+      var last = (comma < 0) ? end : comma;
+      var from = start;
+      while (from < last && data[from] == ' ') {
+        from++;
+      }
+      var to = last;
+      while (to > from && data[to - 1] == ' ') {
+        to--;
+      }
+      list.add(shared(from, to));
+      if (comma < 0) {
+        return list;
+      }
+      start = comma + 1;
+    }
+  }
+
+  /**
+   * Splits an unquoted list value at its commas. Each element is trimmed of spaces.
+   *
+   * @param  value the list value
+   *
+   * @return       the list of elements
+   */
+  private static List<String> split(String value) {
+
+    var list = new ArrayList<String>(4);
+    if (value.isEmpty()) {
+      return list;
+    }
+
+    var from = 0;
+    while (true) {
+      var comma = value.indexOf(',', from);
+      var element = (comma < 0) ? value.substring(from) : value.substring(from, comma);
+      list.add(element.trim());
+      if (comma < 0) {
+        return list;
+      }
+      from = comma + 1;
+    }
+  }
+
+  /**
+   * Returns the offset of the first occurrence of a character in a range of bytes.
+   *
+   * @param  ch    the ASCII character to find
+   * @param  start the start of the range
+   * @param  end   the end of the range
+   *
+   * @return       the offset of the character; -1 if not found
+   */
+  private int indexOf(char ch, int start, int end) {
+
+    for (var i = start; i < end; i++) {
+      if (data[i] == ch) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses a value as an integer.
+   *
+   * @param  start                    the start of the value; -1 if the value is missing
+   * @param  end                      the end of the value
+   *
+   * @return                          the value; 0 if missing or empty
+   *
+   * @throws IllegalArgumentException if the value is not an integer
+   */
+  private int parseInt(int start, int end) {
+
+    if (start < 0 || start == end) {
+      return 0;
+    }
+    if (data[start] == '"') {
+      return Integer.parseInt(string(start, end).trim());
+    }
+
+    var pos = start;
+    var negative = (data[pos] == '-');
+    if (negative || data[pos] == '+') {
+      pos++;
+    }
+    if (pos == end || end - pos > 9) {
+      return Integer.parseInt(decode(start, end));
+    }
+
+    var value = 0;
+    for (; pos < end; pos++) {
+      var digit = data[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("Invalid number: " + decode(start, end));
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a value as a double. Values of at most 15 significant digits without an exponent are
+   * computed exactly from their digits; others are handed to {@link Double#parseDouble(String)}.
+   *
+   * @param  start                    the start of the value; -1 if the value is missing
+   * @param  end                      the end of the value
+   *
+   * @return                          the value; 0 if missing or empty
+   *
+   * @throws IllegalArgumentException if the value is not a number
+   */
+  private double parseDouble(int start, int end) {
+
+    if (start < 0 || start == end) {
+      return 0;
+    }
+
+    var pos = start;
+    var negative = (data[pos] == '-');
+    if (negative || data[pos] == '+') {
+      pos++;
+    }
+
+    var mantissa = 0L;
+    var digits = 0;
+    var scale = 0;
+    var point = false;
+    var seen = false;
+    var simple = true;
+    for (; pos < end; pos++) {
+      var b = data[pos];
+      if (b == '.' && !point) {
+        point = true;
+        continue;
+      }
+      var digit = b - '0';
+      if (digit < 0 || digit > 9 || (mantissa != 0 || digit != 0) && ++digits > 15) {
+        simple = false;
+        break;
+      }
+      mantissa = mantissa * 10 + digit;
+      seen = true;
+      if (point) {
+        scale++;
+      }
+    }
+
+    // both values are exact doubles, so a single division rounds correctly
+    if (simple && seen && scale < POWERS.length) {
+      var value = mantissa / POWERS[scale];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(string(start, end));
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the value, without any quotes, is exactly the given ASCII text.
+   *
+   * @param  start the start of the value; -1 if the value is missing
+   * @param  end   the end of the value
+   * @param  text  the text to compare
+   *
+   * @return       <b>{@code true}</b> if the value matches
+   */
+  private boolean matches(int start, int end, byte[] text) {
+
+    if (start < 0) {
+      return false;
+    }
+    if (end - start >= 2 && data[start] == '"' && data[end - 1] == '"') {
+      start++;
+      end--;
+    }
+    return Arrays.equals(data, start, end, text, 0, text.length);
+  }
+
+  /**
+   * Decodes a range of bytes as a string, taking a fast path for plain ASCII.
+   *
+   * @param  start the start of the range
+   * @param  end   the end of the range
+   *
+   * @return       the decoded string
+   */
+  private String decode(int start, int end) {
+
+    for (var i = start; i < end; i++) {
+      if (data[i] < 0) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+      }
+    }
+    return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Removes the quotes from a quoted value and collapses its escaped quotes.
+   *
+   * @param  value the value, possibly quoted
+   *
+   * @return       the unquoted value
+   */
+  private static String unquote(String value) {
+
+    if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+      return value;
+    }
+    return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+  }
+
+  /**
+   * Returns the ASCII bytes of a string.
+   *
+   * @param  text the text
+   *
+   * @return      the bytes of the text
+   */
+  private static byte[] ascii(String text) {
+
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -24,7 +24,7 @@ public final class ZipcodeData implements Serializable, Cloneable, Comparable<Zi
   /**
    * The lat/long delta for identifying nearby ZIP codes.
    */
-  private static final double DELTA            = 0.2;
+  static final double         DELTA            = 0.2;
 
   /**
    * The status for an active ZIP code.
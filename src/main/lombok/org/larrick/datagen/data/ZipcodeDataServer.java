@@ -6,188 +6,1105 @@
 
 package org.larrick.datagen.data;
 
-import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import lombok.Data;
 
 /**
  * Singleton class that provides access to extended zip code data.
+ * <p>
+ * The server holds no shared source of randomness. Methods that make a random choice have a form
+ * that takes a {@link Random}; give each worker thread its own seeded instance (for example
+ * {@code new Random(seed + worker)}) for contention-free, reproducible output. The forms without a
+ * {@code Random} use {@link ThreadLocalRandom}.
+ * <p>
+ * The data is read from the {@code ZipcodeData.csv} classpath resource, or from the file named by
+ * the {@value #DATAFILE_PROPERTY} system property. A server that reads a file can
+ * {@link #reload()} it, or {@link #watch()} it and reload it whenever it changes. The records and
+ * every index derived from them are rebuilt off to the side and published by replacing a single
+ * reference, so readers never block and never see a mix of old and new data. Each call works on
+ * the data that was current when it started.
  */
 public class ZipcodeDataServer {
 
-  private static final String      DATAFILE = "ZipcodeData.csv";
+  /**
+   * System property naming a CSV file to read in place of the classpath resource.
+   */
+  public static final String      DATAFILE_PROPERTY = "org.larrick.datagen.zipcodeData";
+
+  static final String             DATAFILE          = "ZipcodeData.csv";
+
+  /*
+   * Time without further changes to the watched file before it is reloaded, so that a file being
+   * written is read once it is complete.
+   */
+  private static final long       SETTLE_MILLIS     = 500;
+
+  /*
+   * The number of elements of a parallel batch handled by a single task.
+   */
+  private static final int        BATCH_CHUNK       = 4096;
+
+  /*
+   * The file the data is read from; null for the classpath resource.
+   */
+  private final Path              source;
+  private final boolean           clean;
+
+  /*
+   * The current data set, replaced as a whole on reload.
+   */
+  private volatile ZipcodeDataset data              = ZipcodeDataset.EMPTY;
+
+  /**
+   * Private constructor to prevent instantiation.
+   *
+   * @param source the file to read; null for the classpath resource
+   * @param clean  load only clean data if true
+   */
+  private ZipcodeDataServer(Path source, boolean clean) {
+
+    this.source = source;
+    this.clean = clean;
+  }
+
+  /**
+   * Holder for the shared instance. The JVM loads the data the first time the holder class is
+   * initialized and publishes the instance safely to every thread.
+   */
+  private static final class Holder {
+
+    static final ZipcodeDataServer INSTANCE = load();
+
+    /**
+     * Creates the shared instance and loads the clean data.
+     */
+    private static ZipcodeDataServer load() {
+
+      var file = System.getProperty(DATAFILE_PROPERTY);
+      var server = new ZipcodeDataServer((file == null) ? null : Paths.get(file), true);
+      server.loadData();
+      return server;
+    }
+  }
+
+  /**
+   * Returns an instance of the zip code data reader. The data is loaded by the first caller; other
+   * callers wait until it is ready.
+   *
+   * @return an instance of the reader
+   *
+   * @see    #preload(Executor)
+   */
+  public static ZipcodeDataServer instance() {
+
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Starts loading the shared instance on the given executor, so a service can warm the data set in
+   * the background while it starts up. Calling {@link #instance()} after the returned future
+   * completes never blocks.
+   *
+   * @param  executor the executor that loads the data
+   *
+   * @return          a future completed with the shared instance
+   */
+  public static CompletableFuture<ZipcodeDataServer> preload(Executor executor) {
+
+    return CompletableFuture.supplyAsync(ZipcodeDataServer::instance, executor);
+  }
+
+  /**
+   * Returns a new instance of the zip code data reader with the clean records of the given CSV
+   * file. The instance can be reloaded from the file and watched for changes.
+   *
+   * @param  file        the CSV file to read
+   *
+   * @return             a new instance of the reader
+   *
+   * @throws IOException if the file cannot be read or holds no records
+   *
+   * @see                #watch()
+   */
+  public static ZipcodeDataServer open(Path file) throws IOException {
+
+    var server = new ZipcodeDataServer(file, true);
+    server.reload();
+    return server;
+  }
+
+  /**
+   * Returns an instance of the zip code data reader with all records intact. This includes Unique
+   * and Military records, de-commissioned records and those records with zero population reported.
+   * Used by {@code FixZipcodeData}.
+   *
+   * @return an instance of the reader
+   */
+  static ZipcodeDataServer instanceAllData() {
+
+    var server = new ZipcodeDataServer(null, false);
+    server.loadData();
+    return server;
+  }
+
+  /**
+   * Returns an instance of the zip code data reader with the clean records read from the CSV file,
+   * ignoring any binary snapshot. Used by {@link ZipcodeSnapshot} to build the snapshot.
+   *
+   * @return an instance of the reader
+   */
+  static ZipcodeDataServer instanceCsvData() {
+
+    var server = new ZipcodeDataServer(null, true);
+    server.loadCsv();
+    return server;
+  }
+
+  /**
+   * Returns a new instance of the zip code data reader with the clean records, loaded the same way
+   * as the shared instance: from the binary snapshot when a current one is available, and from the
+   * CSV file otherwise. Used to benchmark startup against the CSV readers.
+   *
+   * @return an instance of the reader
+   */
+  static ZipcodeDataServer instanceSnapshotData() {
+
+    var server = new ZipcodeDataServer(null, true);
+    server.loadData();
+    return server;
+  }
+
+  /**
+   * Returns an instance of the zip code data reader with the clean records read from the CSV file
+   * through Jackson's {@link CsvMapper}. Used to benchmark the CSV readers against each other.
+   *
+   * @return an instance of the reader
+   */
+  static ZipcodeDataServer instanceJacksonData() {
+
+    var server = new ZipcodeDataServer(null, true);
+    server.loadCsvJackson();
+    return server;
+  }
+
+  /**
+   * Returns a {@link Stream} of the Zip code data.
+   *
+   * @return a {@link Stream} of the Zip code data
+   */
+  public Stream<ZipcodeData> stream() {
+
+    return data.zipdata.values().stream();
+  }
+
+  /**
+   * Returns a compact, columnar copy of the Zip code data. The copy holds the same records in a
+   * fraction of the heap and is suited to long-lived or scan-heavy use.
+   *
+   * @return a new {@link ZipcodeTable} of the Zip code data
+   */
+  public ZipcodeTable toTable() {
+
+    return ZipcodeTable.of(data.zipdata.values());
+  }
+
+  /**
+   * Returns a {@link Stream} of the Zip codes and weight value. Used by the weighted generator
+   * {@link org.larrick.datagen.generators.ZipcodeGenerator}.
+   *
+   * @return a {@link Stream} of weighted zip code data
+   *
+   * @see    #sampleZipcode(Random)
+   */
+  public Stream<String> weightedStream() {
+
+    return this.stream().map(s -> s.zipcode + "," + s.population);
+  }
+
+  /**
+   * Returns a random zip code data record, weighted by the population of each zip code. Draws run
+   * in constant time and allocate nothing.
+   *
+   * @param  random the source of randomness
+   *
+   * @return        a population-weighted zip code data record; null if no record has a population
+   */
+  public ZipcodeData sampleZipcode(Random random) {
+
+    var data = this.data;
+    if (data.sampler == null) {
+      return null;
+    }
+
+    return data.weighted[data.sampler.next(random)];
+  }
+
+  /**
+   * Returns the zip code data record for the given zip code.
+   *
+   * @param  zipcode the zip code to return
+   *
+   * @return         the data for the given zip code; null if not found
+   */
+  public ZipcodeData get(String zipcode) {
+
+    return data.zipdata.get(zipcode);
+  }
+
+  /**
+   * Returns the zip code data record for the given numeric zip code, such as 2134 for
+   * {@code 02134}. The record is found with a single array load.
+   *
+   * @param  zipcode the numeric zip code to return
+   *
+   * @return         the data for the given zip code; null if not found
+   *
+   * @see            #parseZipcode(CharSequence)
+   */
+  public ZipcodeData get(int zipcode) {
+
+    return data.get(zipcode);
+  }
+
+  /**
+   * Returns the numeric value of a five-digit zip code, for the lookups that take an {@code int}.
+   *
+   * @param  zipcode the zip code
+   *
+   * @return         the numeric zip code; -1 if the value is not five ASCII digits
+   */
+  public static int parseZipcode(CharSequence zipcode) {
+
+    return ZipcodeDataset.number(zipcode);
+  }
+
+  /**
+   * Returns the numeric value of a five-digit zip code held as ASCII bytes, as read from a file or
+   * a network buffer.
+   *
+   * @param  bytes  the array holding the zip code
+   * @param  offset the offset of the first digit
+   *
+   * @return        the numeric zip code; -1 if the five bytes at the offset are not ASCII digits or
+   *                lie outside the array
+   */
+  public static int parseZipcode(byte[] bytes, int offset) {
+
+    return ZipcodeDataset.number(bytes, offset);
+  }
+
+  /**
+   * Returns the zip codes near the given zip code, as defined by {@link ZipcodeData#isNear}. The
+   * list is looked up in the spatial index on first use and kept with the current data.
+   *
+   * @param  zipcode the zip code to search around
+   *
+   * @return         an unmodifiable list of the nearby zip codes; null if the zip code is not found
+   */
+  public List<ZipcodeData> nearby(String zipcode) {
+
+    var record = get(zipcode);
+    return (record == null) ? null : nearbyZips(record);
+  }
+
+  /**
+   * Returns the zip codes near the given zip code data record, from the spatial index of the
+   * current data. The record itself is not changed, and a record kept from before a reload is
+   * searched in the new data.
+   *
+   * @param  record the zip code data record
+   *
+   * @return        an unmodifiable list of the nearby zip codes, without the record's own zip code
+   */
+  public List<ZipcodeData> nearbyZips(ZipcodeData record) {
+
+    return data.nearby(record);
+  }
+
+  /**
+   * Returns the zip codes nearest to the given point, nearest first.
+   *
+   * @param  latitude  the latitude of the point
+   * @param  longitude the longitude of the point
+   * @param  count     the number of zip codes to return
+   *
+   * @return           a list of at most {@code count} zip code data records
+   */
+  public List<ZipcodeData> nearestK(double latitude, double longitude, int count) {
+
+    return data.grid.nearest(latitude, longitude, count);
+  }
+
+  /**
+   * Returns the zip codes within the given distance of a point, nearest first.
+   *
+   * @param  latitude  the latitude of the point
+   * @param  longitude the longitude of the point
+   * @param  radius    the distance in kilometers
+   *
+   * @return           a list of the zip code data records within the radius
+   */
+  public List<ZipcodeData> withinRadius(double latitude, double longitude, double radius) {
 
-  private static ZipcodeDataServer INSTANCE = null;
+    return data.grid.within(latitude, longitude, radius);
+  }
+
+  /**
+   * Returns the zip codes of the given state.
+   *
+   * @param  state the two-letter state code
+   *
+   * @return       an unmodifiable list of the records, sorted by zip code; empty if none
+   */
+  public List<ZipcodeData> zipsInState(String state) {
+
+    return data.byState.records(state);
+  }
+
+  /**
+   * Returns the zip codes of the given county.
+   *
+   * @param  state  the two-letter state code
+   * @param  county the county name
+   *
+   * @return        an unmodifiable list of the records, sorted by zip code; empty if none
+   */
+  public List<ZipcodeData> zipsInCounty(String state, String county) {
+
+    return data.byCounty.records(ZipcodeIndex.countyKey(state, county));
+  }
+
+  /**
+   * Returns the zip codes of the given time zone.
+   *
+   * @param  timezone the time zone name, such as {@code America/Chicago}
+   *
+   * @return          an unmodifiable list of the records, sorted by zip code; empty if none
+   */
+  public List<ZipcodeData> zipsInTimezone(String timezone) {
+
+    return data.byTimezone.records(timezone);
+  }
+
+  /**
+   * Returns the zip codes that list the given area code.
+   *
+   * @param  areaCode the three-digit area code
+   *
+   * @return          an unmodifiable list of the records, sorted by zip code; empty if none
+   */
+  public List<ZipcodeData> zipsForAreaCode(String areaCode) {
+
+    return data.byAreaCode.records(areaCode);
+  }
+
+  /**
+   * Returns a random zip code data record of the given state, weighted by population.
+   *
+   * @param  state  the two-letter state code
+   * @param  random the source of randomness
+   *
+   * @return        a record; null if no record of the state has a population
+   */
+  public ZipcodeData sampleZipcodeInState(String state, Random random) {
+
+    return data.byState.sample(state, random);
+  }
+
+  /**
+   * Returns a random zip code data record of the given county, weighted by population.
+   *
+   * @param  state  the two-letter state code
+   * @param  county the county name
+   * @param  random the source of randomness
+   *
+   * @return        a record; null if no record of the county has a population
+   */
+  public ZipcodeData sampleZipcodeInCounty(String state, String county, Random random) {
+
+    return data.byCounty.sample(ZipcodeIndex.countyKey(state, county), random);
+  }
+
+  /**
+   * Returns a random zip code data record of the given time zone, weighted by population.
+   *
+   * @param  timezone the time zone name
+   * @param  random   the source of randomness
+   *
+   * @return          a record; null if no record of the time zone has a population
+   */
+  public ZipcodeData sampleZipcodeInTimezone(String timezone, Random random) {
+
+    return data.byTimezone.sample(timezone, random);
+  }
+
+  /**
+   * Returns a random zip code data record that lists the given area code, weighted by population.
+   *
+   * @param  areaCode the three-digit area code
+   * @param  random   the source of randomness
+   *
+   * @return          a record; null if no record with the area code has a population
+   */
+  public ZipcodeData sampleZipcodeForAreaCode(String areaCode, Random random) {
+
+    return data.byAreaCode.sample(areaCode, random);
+  }
+
+  /**
+   * Returns the population served by the given area code: the total population of the zip codes
+   * that list it. A zip code with several area codes counts toward each of them.
+   *
+   * @param  areaCode the three-digit area code
+   *
+   * @return          the population; 0 if the area code is unknown
+   */
+  public long areaCodePopulation(String areaCode) {
+
+    return data.byAreaCode.population(areaCode);
+  }
+
+  /**
+   * Returns a random area code, weighted by the population it serves. Suited to phone numbers,
+   * such as mobile numbers, that are not tied to an address.
+   *
+   * @param  random the source of randomness
+   *
+   * @return        an area code; null if no record has a population
+   */
+  public String sampleAreaCode(Random random) {
+
+    return data.byAreaCode.sampleKey(random);
+  }
+
+  /**
+   * Returns an area code from the commute region of a person: one of the area codes of the home
+   * and work zip codes, weighted by the population each area code serves. Gives work and mobile
+   * phone numbers that fit where the person lives and works.
+   *
+   * @param  home   the home zip code data record; may be null
+   * @param  work   the work zip code data record; may be null
+   * @param  random the source of randomness
+   *
+   * @return        an area code; null if neither record has one
+   */
+  public String getCommuteAreaCode(ZipcodeData home, ZipcodeData work, Random random) {
+
+    var homeCodes = (home == null || isEmpty(home.areacodes)) ? List.<String>of() : home.areacodes;
+    var workCodes = (work == null || isEmpty(work.areacodes)) ? List.<String>of() : work.areacodes;
+    var count = homeCodes.size() + workCodes.size();
+    if (count == 0) {
+      return null;
+    }
+
+    // weigh the distinct area codes of both records; a handful at most, so no table is built
+    var index = data.byAreaCode;
+    var codes = new String[count];
+    var weights = new long[count];
+    var distinct = 0;
+    var total = 0L;
+    for (var i = 0; i < count; i++) {
+      var code = (i < homeCodes.size()) ? homeCodes.get(i) : workCodes.get(i - homeCodes.size());
+      if (contains(codes, distinct, code)) {
+        continue;
+      }
+      codes[distinct] = code;
+      weights[distinct] = index.population(code);
+      total += weights[distinct];
+      distinct++;
+    }
+
+    if (total == 0) {
+      return codes[random.nextInt(distinct)];
+    }
+    var draw = (long) (random.nextDouble() * total);
+    for (var i = 0; i < distinct - 1; i++) {
+      draw -= weights[i];
+      if (draw < 0) {
+        return codes[i];
+      }
+    }
+    return codes[distinct - 1];
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the first values of the given array include a value.
+   *
+   * @param  values the array to search
+   * @param  count  the number of values to search
+   * @param  value  the value to find
+   *
+   * @return        <b>{@code true}</b> if found
+   */
+  private static boolean contains(String[] values, int count, String value) {
+
+    for (var i = 0; i < count; i++) {
+      if (values[i].equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a city value for the given zip code. If there is only one city associated with the zip
+   * code, that value is returned. If there are additional acceptable cities defined, a random
+   * selection among the city and acceptable cities values is returned.
+   *
+   * @param  zipcode the zip code for which the city is requested
+   *
+   * @return         a city value; null of the zipcode if invalid or no city is defined
+   */
+  public String getCity(String zipcode) {
+
+    return getCity(zipcode, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Returns a city value for the given zip code, using the given source of randomness to choose
+   * among the city and acceptable cities values.
+   *
+   * @param  zipcode the zip code for which the city is requested
+   * @param  random  the source of randomness
+   *
+   * @return         a city value; null of the zipcode if invalid or no city is defined
+   */
+  public String getCity(String zipcode, Random random) {
+
+    var record = get(zipcode);
+    return getCity(record, random);
+  }
+
+  /**
+   * Returns a city value for the given numeric zip code, as {@link #getCity(String)} does.
+   *
+   * @param  zipcode the numeric zip code for which the city is requested
+   *
+   * @return         a city value; null if the zip code is not found
+   */
+  public String getCity(int zipcode) {
+
+    return getCity(zipcode, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Returns a city value for the given numeric zip code, using the given source of randomness to
+   * choose among the city and acceptable cities values.
+   *
+   * @param  zipcode the numeric zip code for which the city is requested
+   * @param  random  the source of randomness
+   *
+   * @return         a city value; null if the zip code is not found
+   */
+  public String getCity(int zipcode, Random random) {
+
+    var template = data.template(zipcode);
+    return (template == null) ? null : template.getCity(random);
+  }
+
+  /**
+   * Returns a city value from the given zip code data record. If there is only one city associated
+   * with the zip code, that value is returned. If there are additional acceptable cities defined, a
+   * random selection among the city and acceptable cities values is returned.
+   *
+   * @param  record the zip code data record
+   * @param  random the source of randomness
+   *
+   * @return        a city value; null of the zip code if invalid or no city is defined
+   */
+  private String getCity(ZipcodeData record, Random random) {
+
+    if (record == null) {
+      return null;
+    }
+
+    // If no additional cities, return the base value
+    var cities = record.acceptableCities;
+    if (isEmpty(cities)) {
+      return record.city;
+    }
+
+    // pick among the acceptable cities with the base value at the end, without building a list
+    var index = random.nextInt(cities.size() + 1);
+    return (index == cities.size()) ? record.city : cities.get(index);
+  }
+
+  /**
+   * Returns the state value for the given zip code.
+   *
+   * @param  zipcode the zip code for which the state is requested
+   *
+   * @return         a state value; null if no record found
+   */
+  public String getState(String zipcode) {
+
+    var record = get(zipcode);
+    return getState(record);
+  }
+
+  /**
+   * Returns the state value from the given zip code data record.
+   *
+   * @param  record the zip code data record
+   *
+   * @return        the state value; null if no record
+   */
+  String getState(ZipcodeData record) {
+
+    return (record == null) ? null : record.state;
+  }
+
+  /**
+   * Returns an {@link Address} object initialized with the city, state and zip code values for the
+   * given zip code.
+   *
+   * @param  zipcode the zip code for which data is requested
+   *
+   * @return         a populated Address object
+   *
+   * @see            #getCity(String)
+   * @see            #getState(String)
+   */
+  public Address loadCityState(String zipcode) {
 
-  Map<String, ZipcodeData>         zipdata  = new HashMap<String, ZipcodeData>();
-  private final Random             gen      = new Random();
+    return loadCityState(zipcode, ThreadLocalRandom.current());
+  }
 
   /**
-   * Private constructor to prevent instantiation.
+   * Returns an {@link Address} object initialized with the city, state and zip code values for the
+   * given zip code, using the given source of randomness to choose the city.
+   *
+   * @param  zipcode the zip code for which data is requested
+   * @param  random  the source of randomness
+   *
+   * @return         a populated Address object
+   *
+   * @see            #getCity(String, Random)
+   * @see            #getState(String)
    */
-  private ZipcodeDataServer() {}
+  public Address loadCityState(String zipcode, Random random) {
+
+    var template = data.templates.get(zipcode);
+    if (template == null) {
+      return new Address().setCity(null).setState(null).setZipcode(null);
+    }
+
+    return template.fill(new Address(), random);
+  }
 
   /**
-   * Returns an instance of the zip code data reader.
+   * Fills the city, state, zip code and PO Box values of the given {@link Address} for the given
+   * zip code. The street is left unchanged.
    *
-   * @return an instance of the reader
+   * @param  zipcode the zip code for which data is requested
+   * @param  address the address to fill
+   * @param  random  the source of randomness used to choose the city
+   *
+   * @return         <b>{@code true}</b> if the zip code was found and the address filled
+   *
+   * @see            #template(String)
    */
-  public static ZipcodeDataServer instance() {
+  public boolean fillCityState(String zipcode, Address address, Random random) {
 
-    if (INSTANCE == null) {
-      synchronized (ZipcodeDataServer.class) {
-        if (INSTANCE == null) {
-          INSTANCE = new ZipcodeDataServer();
-          INSTANCE.loadData(true);
-        }
-      }
+    var template = data.templates.get(zipcode);
+    if (template == null) {
+      return false;
     }
 
-    return INSTANCE;
+    template.fill(address, random);
+    return true;
   }
 
   /**
-   * Returns an instance of the zip code data reader with all records intact. This includes Unique
-   * and Military records, de-commissioned records and those records with zero population reported.
-   * Used by {@code FixZipcodeData}.
+   * Returns the pre-resolved address template for the given zip code. Callers that fill many
+   * addresses for the same zip codes can keep the templates and skip the lookup altogether.
    *
-   * @return an instance of the reader
+   * @param  zipcode the zip code for which data is requested
+   *
+   * @return         the address template; null if the zip code is not found
    */
-  static ZipcodeDataServer instanceAllData() {
+  public AddressTemplate template(String zipcode) {
 
-    var server = new ZipcodeDataServer();
-    server.loadData(false);
-    return server;
+    return data.templates.get(zipcode);
   }
 
   /**
-   * Returns a {@link Stream} of the Zip code data.
+   * Returns the pre-resolved address template for the given numeric zip code.
    *
-   * @return a {@link Stream} of the Zip code data
+   * @param  zipcode the numeric zip code for which data is requested
+   *
+   * @return         the address template; null if the zip code is not found
    */
-  public Stream<ZipcodeData> stream() {
+  public AddressTemplate template(int zipcode) {
 
-    return zipdata.entrySet().stream().map(s -> s.getValue());
+    return data.template(zipcode);
   }
 
   /**
-   * Returns a {@link Stream} of the Zip codes and weight value. Used by the weighted generator
-   * {@link org.larrick.datagen.generators.ZipcodeGenerator}.
+   * Looks up the zip code data records of a batch of zip codes.
    *
-   * @return a {@link Stream} of weighted zip code data
+   * @param  zipcodes                 the zip codes to look up
+   * @param  records                  the array receiving the record of each zip code; null if not
+   *                                  found
+   *
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  public Stream<String> weightedStream() {
+  public void getAll(String[] zipcodes, ZipcodeData[] records) {
 
-    return this.stream().map(s -> s.zipcode + "," + s.population);
+    checkBatch(zipcodes.length, records.length);
+    var zipdata = data.zipdata;
+    for (var i = 0; i < zipcodes.length; i++) {
+      records[i] = zipdata.get(zipcodes[i]);
+    }
   }
 
   /**
-   * Returns the zip code data record for the given zip code.
+   * Looks up the zip code data records of a batch of numeric zip codes, such as 2134 for
+   * {@code 02134}.
    *
-   * @param  zipcode the zip code to return
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  records                  the array receiving the record of each zip code; null if not
+   *                                  found
    *
-   * @return         the data for the given zip code; null if not found
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  public ZipcodeData get(String zipcode) {
+  public void getAll(int[] zipcodes, ZipcodeData[] records) {
 
-    return zipdata.get(zipcode);
+    checkBatch(zipcodes.length, records.length);
+    var data = this.data;
+    for (var i = 0; i < zipcodes.length; i++) {
+      records[i] = data.get(zipcodes[i]);
+    }
   }
 
   /**
-   * Returns a city value for the given zip code. If there is only one city associated with the zip
-   * code, that value is returned. If there are additional acceptable cities defined, a random
-   * selection among the city and acceptable cities values is returned.
+   * Returns a city value for each zip code of a batch, as {@link #getCity(String, Random)} does.
    *
-   * @param  zipcode the zip code for which the city is requested
+   * @param  zipcodes                 the zip codes to look up
+   * @param  cities                   the array receiving the city of each zip code; null if not
+   *                                  found
+   * @param  random                   the source of randomness
    *
-   * @return         a city value; null of the zipcode if invalid or no city is defined
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  public String getCity(String zipcode) {
+  public void getCities(String[] zipcodes, String[] cities, Random random) {
 
-    var record = get(zipcode);
-    return getCity(record);
+    checkBatch(zipcodes.length, cities.length);
+    var templates = data.templates;
+    for (var i = 0; i < zipcodes.length; i++) {
+      var template = templates.get(zipcodes[i]);
+      cities[i] = (template == null) ? null : template.getCity(random);
+    }
   }
 
   /**
-   * Returns a city value from the given zip code data record. If there is only one city associated
-   * with the zip code, that value is returned. If there are additional acceptable cities defined, a
-   * random selection among the city and acceptable cities values is returned.
+   * Returns a city value for each numeric zip code of a batch, as
+   * {@link #getCity(String, Random)} does.
    *
-   * @param  record the zip code data record
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  cities                   the array receiving the city of each zip code; null if not
+   *                                  found
+   * @param  random                   the source of randomness
    *
-   * @return        a city value; null of the zip code if invalid or no city is defined
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  private String getCity(ZipcodeData record) {
+  public void getCities(int[] zipcodes, String[] cities, Random random) {
 
-    if (record == null) {
-      return null;
+    checkBatch(zipcodes.length, cities.length);
+    var data = this.data;
+    for (var i = 0; i < zipcodes.length; i++) {
+      var template = data.template(zipcodes[i]);
+      cities[i] = (template == null) ? null : template.getCity(random);
     }
+  }
 
-    // If no additional cities, return the base value
-    if (record.acceptableCities.isEmpty()) {
-      return record.city;
+  /**
+   * Returns the state value for each zip code of a batch.
+   *
+   * @param  zipcodes                 the zip codes to look up
+   * @param  states                   the array receiving the state of each zip code; null if not
+   *                                  found
+   *
+   * @throws IllegalArgumentException if the output array is shorter than the batch
+   */
+  public void getStates(String[] zipcodes, String[] states) {
+
+    checkBatch(zipcodes.length, states.length);
+    var zipdata = data.zipdata;
+    for (var i = 0; i < zipcodes.length; i++) {
+      states[i] = getState(zipdata.get(zipcodes[i]));
     }
+  }
+
+  /**
+   * Returns the state value for each numeric zip code of a batch.
+   *
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  states                   the array receiving the state of each zip code; null if not
+   *                                  found
+   *
+   * @throws IllegalArgumentException if the output array is shorter than the batch
+   */
+  public void getStates(int[] zipcodes, String[] states) {
 
-    var cities = new ArrayList<String>(record.acceptableCities);
-    cities.add(record.city);
-    return cities.get(gen.nextInt(cities.size()));
+    checkBatch(zipcodes.length, states.length);
+    var data = this.data;
+    for (var i = 0; i < zipcodes.length; i++) {
+      states[i] = getState(data.get(zipcodes[i]));
+    }
   }
 
   /**
-   * Returns the state value for the given zip code.
+   * Returns an area code for each zip code of a batch, as {@link #getAreaCode(String, Random)}
+   * does.
    *
-   * @param  zipcode the zip code for which the state is requested
+   * @param  zipcodes                 the zip codes to look up
+   * @param  areaCodes                the array receiving the area code of each zip code; null if
+   *                                  none defined
+   * @param  random                   the source of randomness
    *
-   * @return         a state value; null if no record found
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  public String getState(String zipcode) {
+  public void getAreaCodes(String[] zipcodes, String[] areaCodes, Random random) {
 
-    var record = get(zipcode);
-    return getState(record);
+    checkBatch(zipcodes.length, areaCodes.length);
+    var zipdata = data.zipdata;
+    for (var i = 0; i < zipcodes.length; i++) {
+      areaCodes[i] = getAreaCode(zipdata.get(zipcodes[i]), random);
+    }
   }
 
   /**
-   * Returns the state value from the given zip code data record.
+   * Returns an area code for each numeric zip code of a batch, as
+   * {@link #getAreaCode(String, Random)} does.
    *
-   * @param  record the zip code data record
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  areaCodes                the array receiving the area code of each zip code; null if
+   *                                  none defined
+   * @param  random                   the source of randomness
    *
-   * @return        the state value; null if no record
+   * @throws IllegalArgumentException if the output array is shorter than the batch
    */
-  String getState(ZipcodeData record) {
+  public void getAreaCodes(int[] zipcodes, String[] areaCodes, Random random) {
 
-    return (record == null) ? null : record.state;
+    checkBatch(zipcodes.length, areaCodes.length);
+    var data = this.data;
+    for (var i = 0; i < zipcodes.length; i++) {
+      areaCodes[i] = getAreaCode(data.get(zipcodes[i]), random);
+    }
   }
 
   /**
-   * Returns an {@link Address} object initialized with the city, state and zip code values for the
-   * given zip code.
+   * Fills the city, state, zip code and PO Box values of a batch of addresses, as
+   * {@link #fillCityState(String, Address, Random)} does. Addresses whose zip code is not found
+   * are left unchanged.
    *
-   * @param  zipcode the zip code for which data is requested
+   * @param  zipcodes                 the zip codes to look up
+   * @param  addresses                the addresses to fill, one per zip code
+   * @param  random                   the source of randomness used to choose the cities
    *
-   * @return         a populated Address object
+   * @return                          the number of addresses filled
    *
-   * @see            #getCity(String)
-   * @see            #getState(String)
+   * @throws IllegalArgumentException if the address array is shorter than the batch
    */
-  public Address loadCityState(String zipcode) {
+  public int fillCityStates(String[] zipcodes, Address[] addresses, Random random) {
 
-    var record = get(zipcode);
-    return new Address().setCity(getCity(record)).setState(getState(record))
-        .setZipcode(record == null ? null : record.zipcode)
-        .setPoBox(record == null ? false : record.type.equals(ZipcodeData.PO_BOX));
+    checkBatch(zipcodes.length, addresses.length);
+    return fillCityStates(data, zipcodes, 0, zipcodes.length, addresses, random);
+  }
+
+  /**
+   * Fills the city, state, zip code and PO Box values of a batch of addresses from numeric zip
+   * codes, as {@link #fillCityState(String, Address, Random)} does. Addresses whose zip code is not
+   * found are left unchanged.
+   *
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  addresses                the addresses to fill, one per zip code
+   * @param  random                   the source of randomness used to choose the cities
+   *
+   * @return                          the number of addresses filled
+   *
+   * @throws IllegalArgumentException if the address array is shorter than the batch
+   */
+  public int fillCityStates(int[] zipcodes, Address[] addresses, Random random) {
+
+    checkBatch(zipcodes.length, addresses.length);
+    return fillCityStates(data, zipcodes, 0, zipcodes.length, addresses, random);
+  }
+
+  /**
+   * Fills a batch of addresses in parallel on the common {@link ForkJoinPool}. The batch is cut
+   * into chunks of 4096 addresses, and each chunk chooses its cities with its own
+   * {@link Random} seeded from the given seed, so the result depends only on the seed and not on
+   * the number of threads.
+   *
+   * @param  zipcodes                 the zip codes to look up
+   * @param  addresses                the addresses to fill, one per zip code
+   * @param  seed                     the seed of the sources of randomness
+   *
+   * @return                          the number of addresses filled
+   *
+   * @throws IllegalArgumentException if the address array is shorter than the batch
+   *
+   * @see                             #fillCityStates(String[], Address[], Random)
+   */
+  public int fillCityStatesParallel(String[] zipcodes, Address[] addresses, long seed) {
+
+    checkBatch(zipcodes.length, addresses.length);
+    var data = this.data;
+    return inChunks(zipcodes.length, seed,
+        (from, to, random) -> fillCityStates(data, zipcodes, from, to, addresses, random));
+  }
+
+  /**
+   * Fills a batch of addresses from numeric zip codes in parallel on the common
+   * {@link ForkJoinPool}, as {@link #fillCityStatesParallel(String[], Address[], long)} does.
+   *
+   * @param  zipcodes                 the numeric zip codes to look up
+   * @param  addresses                the addresses to fill, one per zip code
+   * @param  seed                     the seed of the sources of randomness
+   *
+   * @return                          the number of addresses filled
+   *
+   * @throws IllegalArgumentException if the address array is shorter than the batch
+   */
+  public int fillCityStatesParallel(int[] zipcodes, Address[] addresses, long seed) {
+
+    checkBatch(zipcodes.length, addresses.length);
+    var data = this.data;
+    return inChunks(zipcodes.length, seed,
+        (from, to, random) -> fillCityStates(data, zipcodes, from, to, addresses, random));
+  }
+
+  /**
+   * Fills a range of a batch of addresses.
+   *
+   * @param  data      the data set to use
+   * @param  zipcodes  the zip codes to look up
+   * @param  from      the index of the first address
+   * @param  to        the end of the range
+   * @param  addresses the addresses to fill
+   * @param  random    the source of randomness used to choose the cities
+   *
+   * @return           the number of addresses filled
+   */
+  private static int fillCityStates(ZipcodeDataset data, String[] zipcodes, int from, int to,
+      Address[] addresses, Random random) {
+
+    var templates = data.templates;
+    var count = 0;
+    for (var i = from; i < to; i++) {
+      var template = templates.get(zipcodes[i]);
+      if (template != null) {
+        template.fill(addresses[i], random);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Fills a range of a batch of addresses from numeric zip codes.
+   *
+   * @param  data      the data set to use
+   * @param  zipcodes  the numeric zip codes to look up
+   * @param  from      the index of the first address
+   * @param  to        the end of the range
+   * @param  addresses the addresses to fill
+   * @param  random    the source of randomness used to choose the cities
+   *
+   * @return           the number of addresses filled
+   */
+  private static int fillCityStates(ZipcodeDataset data, int[] zipcodes, int from, int to,
+      Address[] addresses, Random random) {
+
+    var count = 0;
+    for (var i = from; i < to; i++) {
+      var template = data.template(zipcodes[i]);
+      if (template != null) {
+        template.fill(addresses[i], random);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Work done on one chunk of a parallel batch.
+   */
+  @FunctionalInterface
+  private interface ChunkTask {
+
+    /**
+     * Processes a range of the batch.
+     *
+     * @param  from   the index of the first element
+     * @param  to     the end of the range
+     * @param  random the source of randomness of the chunk
+     *
+     * @return        the number of elements processed
+     */
+    int run(int from, int to, Random random);
+  }
+
+  /**
+   * Runs a task over a batch cut into chunks of {@value #BATCH_CHUNK} elements, in parallel. The
+   * seeds of the chunks are drawn in chunk order from the given seed.
+   *
+   * @param  size the size of the batch
+   * @param  seed the seed of the sources of randomness
+   * @param  task the work done on each chunk
+   *
+   * @return      the total returned by the chunks
+   */
+  private static int inChunks(int size, long seed, ChunkTask task) {
+
+    var chunks = (size + BATCH_CHUNK - 1) / BATCH_CHUNK;
+    var seeds = new SplittableRandom(seed).longs(chunks).toArray();
+    return IntStream.range(0, chunks).parallel().map(chunk -> {
+      var from = chunk * BATCH_CHUNK;
+      return task.run(from, Math.min(from + BATCH_CHUNK, size), new Random(seeds[chunk]));
+    }).sum();
+  }
+
+  /**
+   * Checks that an output array can hold the results of a batch.
+   *
+   * @param  size                     the size of the batch
+   * @param  length                   the length of the output array
+   *
+   * @throws IllegalArgumentException if the output array is too short
+   */
+  private static void checkBatch(int size, int length) {
+
+    if (length < size) {
+      throw new IllegalArgumentException(
+          "Output array too short for batch: " + length + " < " + size);
+    }
   }
 
   /**
@@ -199,7 +1116,21 @@ public class ZipcodeDataServer {
    */
   public String getAreaCode(String zipcode) {
 
-    return getAreaCode(get(zipcode));
+    return getAreaCode(get(zipcode), ThreadLocalRandom.current());
+  }
+
+  /**
+   * Returns a valid area code for the given zip code, using the given source of randomness to
+   * choose among its area codes.
+   *
+   * @param  zipcode the zip code for which the area code is requested
+   * @param  random  the source of randomness
+   *
+   * @return         a valid area code; null of none defined
+   */
+  public String getAreaCode(String zipcode, Random random) {
+
+    return getAreaCode(get(zipcode), random);
   }
 
   /**
@@ -211,6 +1142,20 @@ public class ZipcodeDataServer {
    */
   public String getAreaCode(ZipcodeData record) {
 
+    return getAreaCode(record, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Returns one of the area codes defined in the given zip code data record, using the given source
+   * of randomness to choose it.
+   *
+   * @param  record the zip code data record
+   * @param  random the source of randomness
+   *
+   * @return        one of the defined area codes; null if none defined
+   */
+  public String getAreaCode(ZipcodeData record, Random random) {
+
     if (record == null) {
       return null;
     }
@@ -221,48 +1166,194 @@ public class ZipcodeDataServer {
       return null;
     }
 
-    return acodes.get(gen.nextInt(acodes.size()));
+    return acodes.get(random.nextInt(acodes.size()));
+  }
+
+  /**
+   * Loads the zip code data. Clean data from the classpath is read from the binary snapshot when a
+   * current one is available, and from the csv source file otherwise. Either way the dataset and
+   * its indexes are built in full; the snapshot only saves parsing and validating the csv text.
+   */
+  private void loadData() {
+
+    if (clean && source == null) {
+      var table = ZipcodeSnapshot.load(getClass().getClassLoader());
+      if (table != null) {
+        data = new ZipcodeDataset(table);
+        return;
+      }
+    }
+
+    loadCsv();
+  }
+
+  /**
+   * Reads zip code data from the csv source, reporting any failure.
+   */
+  private void loadCsv() {
+
+    try {
+      reload();
+    } catch (Exception exc) {
+      System.err.println("ZipcodeDataReader.loadData(): " + exc.toString());
+      exc.printStackTrace();
+    }
+  }
+
+  /**
+   * Reads the csv source again and replaces the data with its records. Readers keep using the
+   * previous data until the new data and all its indexes are built, and the previous data is kept
+   * if the source cannot be read.
+   * <p>
+   * Reloads run one at a time: a reload started while another one is running, by another caller or
+   * by the {@linkplain #watch() watch} thread, waits for it to finish before reading the source. The
+   * data published last is therefore always read from the source after every earlier reload began,
+   * and an older file never replaces a newer one.
+   *
+   * @throws IOException              if the source cannot be read or holds no records
+   * @throws IllegalArgumentException if the source is not a valid zip code file
+   */
+  public synchronized void reload() throws IOException {
+
+    var bytes = readSource();
+    var reader = new ZipcodeCsvReader(bytes, bytes.length, clean, clean ? this::isValid : null);
+    var records = reader.read(ForkJoinPool.commonPool());
+    if (records.isEmpty()) {
+      throw new IOException("No zip code records in \"" + sourceName() + "\"");
+    }
+
+    data = new ZipcodeDataset(records);
+  }
+
+  /**
+   * Watches the csv source file and reloads it in the background whenever it is modified or
+   * replaced. Changes are picked up once the file has been left alone for half a second; replacing
+   * the file by an atomic move is the safest way to update it. A failed reload is reported and the
+   * previous data kept.
+   *
+   * @return                       a handle that stops watching when closed
+   *
+   * @throws IOException           if the directory of the file cannot be watched
+   * @throws IllegalStateException if the data was read from the classpath
+   */
+  public Closeable watch() throws IOException {
+
+    if (source == null) {
+      throw new IllegalStateException("Cannot watch the classpath resource \"" + DATAFILE + "\"");
+    }
+
+    var file = source.toAbsolutePath();
+    var service = file.getFileSystem().newWatchService();
+    try {
+      file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException | RuntimeException exc) {
+      service.close();
+      throw exc;
+    }
+
+    var thread = new Thread(() -> watch(service, file.getFileName()), "zipcode-reload");
+    thread.setDaemon(true);
+    thread.start();
+    return service;
+  }
+
+  /**
+   * Waits for changes to the given file and reloads it, until the watch service is closed.
+   *
+   * @param service the watch service registered on the directory of the file
+   * @param name    the name of the file
+   */
+  private void watch(WatchService service, Path name) {
+
+    try {
+      while (true) {
+        var key = service.take();
+        var changed = false;
+        // collect events until the file settles
+        while (key != null) {
+          for (var event : key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                || name.equals(event.context());
+          }
+          key.reset();
+          key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        if (changed) {
+          try {
+            reload();
+          } catch (Exception exc) {
+            System.err.println("ZipcodeDataServer.watch(): " + exc.toString());
+            exc.printStackTrace();
+          }
+        }
+      }
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException exc) {
+      // stopped by closing the service
+    }
   }
 
   /**
-   * Reads zip code data from the csv source file.
+   * Reads the bytes of the csv source.
    *
-   * @param  clean load only clean data if true;
+   * @return                          the contents of the file
    *
-   * @return       a Map of the zip code data
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the classpath resource does not exist
    */
-  private void loadData(boolean clean) {
+  private byte[] readSource() throws IOException {
+
+    if (source != null) {
+      return Files.readAllBytes(source);
+    }
 
     try (var file = getClass().getClassLoader().getResourceAsStream(DATAFILE)) {
       if (file == null) {
         throw new IllegalArgumentException("Cannot access file \"" + DATAFILE + "\"");
       }
+      return file.readAllBytes();
+    }
+  }
 
-      var in = new BufferedReader(new InputStreamReader(file));
+  /**
+   * Returns the name of the csv source for messages.
+   *
+   * @return the path of the file, or the name of the classpath resource
+   */
+  private String sourceName() {
 
-      // skip comments at the beginning of the file
-      while (true) {
-        var line = in.readLine();
-        if (line.charAt(0) != '#') {
-          break;
-        }
+    return (source == null) ? DATAFILE : source.toString();
+  }
+
+  /**
+   * Reads zip code data from the csv source file through Jackson's {@link CsvMapper}. Kept as the
+   * reference for {@link #reload()}.
+   */
+  private void loadCsvJackson() {
+
+    try (var file = getClass().getClassLoader().getResourceAsStream(DATAFILE)) {
+      if (file == null) {
+        throw new IllegalArgumentException("Cannot access file \"" + DATAFILE + "\"");
       }
-      // once here, we've read the header line, which we want to skip anyway
 
-      var mapper = new CsvMapper();
-      mapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, false);
-      mapper.configure(CsvParser.Feature.TRIM_SPACES, true);
-      var schema = mapper.schemaFor(ZipcodeData.class).withArrayElementSeparator(",");
-      MappingIterator<ZipcodeData> iterator =
-          mapper.readerFor(ZipcodeData.class).with(schema).readValues(in);
+      // the shared reader skips the comments and maps the columns by the header row
+      var in = new BufferedReader(new InputStreamReader(file));
+      MappingIterator<ZipcodeData> iterator = Mappers.csvReader(ZipcodeData.class).readValues(in);
 
       // go through records and keep those that fit the criteria shown below (in isValid()).
+      var records = new ArrayList<ZipcodeData>();
       iterator.forEachRemaining(rec -> {
+        rec.poBox = ZipcodeData.PO_BOX.equals(rec.type);
         var valid = clean ? isValid(rec) : true;
         if (valid) {
-          zipdata.put(rec.getZipcode(), rec);
+          records.add(rec);
         }
       });
+
+      data = new ZipcodeDataset(records);
     } catch (Exception exc) {
       System.err.println("ZipcodeDataReader.loadData(): " + exc.toString());
       exc.printStackTrace();
@@ -353,15 +1444,11 @@ public class ZipcodeDataServer {
    */
   void dumpList(OutputStream out) {
 
-    var mapper = new CsvMapper();
-    mapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, false);
-
-    var schema = mapper.schemaFor(ZipcodeData.class).withArrayElementSeparator(",").withHeader();
-    var writer = mapper.writer(schema);
-
     try {
       var data = this.stream().sorted().collect(Collectors.toList());
-      writer.writeValue(out, data);
+      try (var writer = Mappers.csvWriter(ZipcodeData.class).writeValues(out)) {
+        writer.writeAll(data);
+      }
     } catch (IOException exc) {
       System.err.println(exc.getMessage());
       exc.printStackTrace();
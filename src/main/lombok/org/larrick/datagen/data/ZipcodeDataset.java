@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of Zip code records with the indexes derived from them. {@link ZipcodeDataServer}
+ * holds its data in a single instance of this class and replaces the whole instance when the data
+ * is reloaded, so a reader that takes the current instance sees records and indexes that match.
+ */
+final class ZipcodeDataset {
+
+  /**
+   * The data set with no records.
+   */
+  static final ZipcodeDataset          EMPTY = new ZipcodeDataset(List.of());
+
+  /**
+   * The number of five-digit zip codes, and the size of the tables indexed by zip code value.
+   */
+  static final int                     NUMBERS = 100000;
+
+  /*
+   * Records by zip code.
+   */
+  final Map<String, ZipcodeData>       zipdata;
+
+  /*
+   * Records with a non-zero population, sorted by zip code, and the alias table used to draw them
+   * weighted by population.
+   */
+  final ZipcodeData[]                  weighted;
+  final AliasTable                     sampler;
+
+  /*
+   * Spatial index over all records.
+   */
+  final ZipcodeGrid                    grid;
+
+  /*
+   * Pre-resolved address values for each zip code.
+   */
+  final Map<String, AddressTemplate>   templates;
+
+  /*
+   * Records and address templates indexed by the numeric value of their zip code.
+   */
+  final ZipcodeData[]                  byNumber;
+  final AddressTemplate[]              templateByNumber;
+
+  /*
+   * Secondary indexes by state, by county within a state, by time zone and by area code.
+   */
+  final ZipcodeIndex                   byState;
+  final ZipcodeIndex                   byCounty;
+  final ZipcodeIndex                   byTimezone;
+  final ZipcodeIndex                   byAreaCode;
+
+  /*
+   * Nearby records by zip code, looked up in the grid on first use.
+   */
+  private final Map<String, List<ZipcodeData>> nearby = new ConcurrentHashMap<>();
+
+  /**
+   * Builds the data set and its indexes from the given records. When several records have the same
+   * zip code, the last one is kept. Records are sorted by zip code for the alias tables so that a
+   * seeded source of randomness always draws the same sequence.
+   *
+   * @param records the Zip code records
+   */
+  ZipcodeDataset(Collection<ZipcodeData> records) {
+
+    this(sorted(records), null);
+  }
+
+  /**
+   * Builds the data set and its indexes from the columns of a table, such as one read from a
+   * snapshot. The table is already sorted by zip code with one row per zip code, and holds the
+   * numeric zip codes, so each row becomes a single record that goes straight into the indexes.
+   *
+   * @param table the Zip code table
+   */
+  ZipcodeDataset(ZipcodeTable table) {
+
+    this(IntStream.range(0, table.size()).mapToObj(table::record).toArray(ZipcodeData[]::new),
+        IntStream.range(0, table.size()).map(table::zip).toArray());
+  }
+
+  /**
+   * Builds the data set and its indexes from records sorted by zip code, one per zip code.
+   *
+   * @param sorted  the sorted records
+   * @param numbers the numeric value of the zip code of each record; null to parse the zip codes
+   */
+  private ZipcodeDataset(ZipcodeData[] sorted, int[] numbers) {
+
+    var map = new HashMap<String, ZipcodeData>(sorted.length * 4 / 3 + 1);
+    var addresses = new HashMap<String, AddressTemplate>(sorted.length * 4 / 3 + 1);
+    byNumber = new ZipcodeData[NUMBERS];
+    templateByNumber = new AddressTemplate[NUMBERS];
+    for (var i = 0; i < sorted.length; i++) {
+      var rec = sorted[i];
+      var template = new AddressTemplate(rec);
+      map.put(rec.zipcode, rec);
+      addresses.put(rec.zipcode, template);
+
+      var number = (numbers == null) ? number(rec.zipcode) : numbers[i];
+      if (number >= 0) {
+        byNumber[number] = rec;
+        templateByNumber[number] = template;
+      }
+    }
+    zipdata = Collections.unmodifiableMap(map);
+    templates = Collections.unmodifiableMap(addresses);
+
+    grid = new ZipcodeGrid(Arrays.asList(sorted));
+
+    byState = new ZipcodeIndex(sorted, rec -> ZipcodeIndex.key(rec.state));
+    byCounty = new ZipcodeIndex(sorted,
+        rec -> ZipcodeIndex.key(ZipcodeIndex.countyKey(rec.state, rec.county)));
+    byTimezone = new ZipcodeIndex(sorted, rec -> ZipcodeIndex.key(rec.timezone));
+    byAreaCode = new ZipcodeIndex(sorted,
+        rec -> (rec.areacodes == null) ? List.of() : rec.areacodes);
+
+    weighted = Arrays.stream(sorted).filter(s -> s.population > 0).toArray(ZipcodeData[]::new);
+    if (weighted.length == 0) {
+      sampler = null;
+      return;
+    }
+
+    var weights = new double[weighted.length];
+    for (var i = 0; i < weighted.length; i++) {
+      weights[i] = weighted[i].population;
+    }
+    sampler = new AliasTable(weights);
+  }
+
+  /**
+   * Sorts the given records by zip code, keeping the last of several records with the same zip
+   * code.
+   *
+   * @param  records the records
+   *
+   * @return         a new array of the sorted records, one per zip code
+   */
+  private static ZipcodeData[] sorted(Collection<ZipcodeData> records) {
+
+    // the sort is stable, so the last record of a zip code ends its run of equal zip codes
+    var sorted = records.toArray(new ZipcodeData[0]);
+    Arrays.sort(sorted);
+    var count = 0;
+    for (var i = 0; i < sorted.length; i++) {
+      if (i + 1 == sorted.length || sorted[i].compareTo(sorted[i + 1]) != 0) {
+        sorted[count++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, count);
+  }
+
+  /**
+   * Returns the record of the given zip code value.
+   *
+   * @param  number the numeric value of the zip code
+   *
+   * @return        the record; null if not found or not a zip code value
+   */
+  ZipcodeData get(int number) {
+
+    return (number >= 0 && number < NUMBERS) ? byNumber[number] : null;
+  }
+
+  /**
+   * Returns the address template of the given zip code value.
+   *
+   * @param  number the numeric value of the zip code
+   *
+   * @return        the template; null if not found or not a zip code value
+   */
+  AddressTemplate template(int number) {
+
+    return (number >= 0 && number < NUMBERS) ? templateByNumber[number] : null;
+  }
+
+  /**
+   * Returns the records near the given record, from the grid of this data set. Lists for records of
+   * this data set are kept here, never in the records, so they are safely shared between threads
+   * and go away with the data set. A record of another data set, such as one replaced by a reload,
+   * is looked up in this grid without keeping the list.
+   *
+   * @param  record the record to search around
+   *
+   * @return        an unmodifiable list of the nearby records
+   */
+  List<ZipcodeData> nearby(ZipcodeData record) {
+
+    if (zipdata.get(record.zipcode) != record) {
+      return Collections.unmodifiableList(grid.nearby(record));
+    }
+    return nearby.computeIfAbsent(record.zipcode,
+        zip -> Collections.unmodifiableList(grid.nearby(record)));
+  }
+
+  /**
+   * Returns the numeric value of a five-digit zip code. This is the one parser behind every lookup
+   * by numeric zip code, so all of them accept the same values.
+   *
+   * @param  zipcode the zip code
+   *
+   * @return         the value; -1 if the zip code is not five ASCII digits
+   */
+  static int number(CharSequence zipcode) {
+
+    if (zipcode == null || zipcode.length() != 5) {
+      return -1;
+    }
+
+    var value = 0;
+    for (var i = 0; i < 5; i++) {
+      value = digit(value, zipcode.charAt(i));
+    }
+    return value;
+  }
+
+  /**
+   * Returns the numeric value of a five-digit zip code held as ASCII bytes.
+   *
+   * @param  bytes  the array holding the zip code
+   * @param  offset the offset of the first digit
+   *
+   * @return        the value; -1 if the five bytes at the offset are not ASCII digits or lie
+   *                outside the array
+   */
+  static int number(byte[] bytes, int offset) {
+
+    if (bytes == null || offset < 0 || offset > bytes.length - 5) {
+      return -1;
+    }
+
+    var value = 0;
+    for (var i = offset; i < offset + 5; i++) {
+      value = digit(value, bytes[i]);
+    }
+    return value;
+  }
+
+  /**
+   * Appends a digit to a partly parsed zip code value.
+   *
+   * @param  value the value of the digits so far; -1 once a character was not a digit
+   * @param  ch    the next character
+   *
+   * @return       the value with the digit appended; -1 if either input is not valid
+   */
+  private static int digit(int value, int ch) {
+
+    return (value < 0 || ch < '0' || ch > '9') ? -1 : value * 10 + (ch - '0');
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return the number of records
+   */
+  int size() {
+
+    return zipdata.size();
+  }
+}
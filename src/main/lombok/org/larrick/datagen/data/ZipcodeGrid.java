@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Uniform latitude/longitude grid over the Zip code records. Each cell is {@link ZipcodeData#DELTA}
+ * degrees square, so every record that {@link ZipcodeData#isNear} a given record lies in the 3 x 3
+ * block of cells around it. Only occupied cells are stored: records are sorted by cell and the
+ * cells are found by binary search.
+ */
+final class ZipcodeGrid {
+
+  /**
+   * Mean radius of the Earth in kilometers.
+   */
+  static final double         EARTH_RADIUS = 6371.0;
+
+  private static final double CELL         = ZipcodeData.DELTA;
+  private static final double KM_PER_CELL  = Math.toRadians(CELL) * EARTH_RADIUS;
+  private static final int    COLUMNS      = (int) Math.ceil(360 / CELL) + 1;
+
+  /*
+   * Occupied cells in ascending order; the records of cells[i] are records[start[i]] up to
+   * records[start[i + 1]].
+   */
+  private final int[]         cells;
+  private final int[]         start;
+  private final ZipcodeData[] records;
+
+  private final int           minRow;
+  private final int           maxRow;
+  private final int           minColumn;
+  private final int           maxColumn;
+
+  /**
+   * Builds the grid over the given records.
+   *
+   * @param data the records to index
+   */
+  ZipcodeGrid(Collection<ZipcodeData> data) {
+
+    records = data.toArray(new ZipcodeData[0]);
+    Arrays.sort(records, Comparator.comparingInt((ZipcodeData s) -> cell(s.latitude, s.longitude))
+        .thenComparing(Comparator.naturalOrder()));
+
+    var cellList = new int[records.length];
+    var startList = new int[records.length + 1];
+    var count = 0;
+    var rowLow = Integer.MAX_VALUE;
+    var rowHigh = Integer.MIN_VALUE;
+    var columnLow = Integer.MAX_VALUE;
+    var columnHigh = Integer.MIN_VALUE;
+    for (var i = 0; i < records.length; i++) {
+      var cell = cell(records[i].latitude, records[i].longitude);
+      if (count == 0 || cellList[count - 1] != cell) {
+        cellList[count] = cell;
+        startList[count++] = i;
+      }
+      rowLow = Math.min(rowLow, cell / COLUMNS);
+      rowHigh = Math.max(rowHigh, cell / COLUMNS);
+      columnLow = Math.min(columnLow, cell % COLUMNS);
+      columnHigh = Math.max(columnHigh, cell % COLUMNS);
+    }
+    startList[count] = records.length;
+
+    cells = Arrays.copyOf(cellList, count);
+    start = Arrays.copyOf(startList, count + 1);
+    minRow = rowLow;
+    maxRow = rowHigh;
+    minColumn = columnLow;
+    maxColumn = columnHigh;
+  }
+
+  /**
+   * Returns the records that are {@linkplain ZipcodeData#isNear near} the given record, not
+   * including the record of its own zip code. The record need not be one of the indexed records.
+   *
+   * @param  rec the record to search around
+   *
+   * @return     a new list of the nearby records
+   */
+  List<ZipcodeData> nearby(ZipcodeData rec) {
+
+    var result = new ArrayList<ZipcodeData>();
+    var row = row(rec.latitude);
+    var column = column(rec.longitude);
+    for (var r = row - 1; r <= row + 1; r++) {
+      for (var c = column - 1; c <= column + 1; c++) {
+        var index = find(r, c);
+        if (index < 0) {
+          continue;
+        }
+        for (var i = start[index]; i < start[index + 1]; i++) {
+          if (!records[i].zipcode.equals(rec.zipcode) && records[i].isNear(rec)) {
+            result.add(records[i]);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the records within the given distance of a point, nearest first.
+   *
+   * @param  latitude  the latitude of the point
+   * @param  longitude the longitude of the point
+   * @param  radius    the distance in kilometers
+   *
+   * @return           a new list of the records within the radius
+   */
+  List<ZipcodeData> within(double latitude, double longitude, double radius) {
+
+    var rows = (int) Math.ceil(radius / KM_PER_CELL);
+    var cos = Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + rows * CELL, 90)));
+    var columns = (int) Math.min(Math.ceil(radius / (cos * KM_PER_CELL)), COLUMNS);
+
+    var row = row(latitude);
+    var column = column(longitude);
+    var result = new ArrayList<ZipcodeData>();
+    for (var r = Math.max(row - rows, minRow); r <= Math.min(row + rows, maxRow); r++) {
+      for (var c = Math.max(column - columns, minColumn); c <= Math.min(column + columns,
+          maxColumn); c++) {
+        var index = find(r, c);
+        if (index < 0) {
+          continue;
+        }
+        for (var i = start[index]; i < start[index + 1]; i++) {
+          if (distance(latitude, longitude, records[i]) <= radius) {
+            result.add(records[i]);
+          }
+        }
+      }
+    }
+
+    result.sort(Comparator.comparingDouble(s -> distance(latitude, longitude, s)));
+    return result;
+  }
+
+  /**
+   * Returns the given number of records nearest to a point, nearest first. The search visits rings
+   * of cells around the point and stops once no unvisited cell can hold a nearer record.
+   *
+   * @param  latitude  the latitude of the point
+   * @param  longitude the longitude of the point
+   * @param  count     the number of records to return
+   *
+   * @return           a new list of at most {@code count} records
+   */
+  List<ZipcodeData> nearest(double latitude, double longitude, int count) {
+
+    if (count <= 0 || records.length == 0) {
+      return new ArrayList<ZipcodeData>();
+    }
+
+    // max-heap of the best candidates found so far
+    var best = new PriorityQueue<ZipcodeData>(count + 1,
+        Comparator.comparingDouble((ZipcodeData s) -> distance(latitude, longitude, s)).reversed());
+
+    var row = row(latitude);
+    var column = column(longitude);
+    var rings = Math.max(Math.max(row - minRow, maxRow - row),
+        Math.max(column - minColumn, maxColumn - column));
+    for (var ring = 0; ring <= rings; ring++) {
+      for (var r = row - ring; r <= row + ring; r++) {
+        // visit the whole first and last rows of the ring, but only the ends of the others
+        var step = (r == row - ring || r == row + ring) ? 1 : Math.max(2 * ring, 1);
+        for (var c = column - ring; c <= column + ring; c += step) {
+          var index = find(r, c);
+          if (index < 0) {
+            continue;
+          }
+          for (var i = start[index]; i < start[index + 1]; i++) {
+            best.add(records[i]);
+            if (best.size() > count) {
+              best.poll();
+            }
+          }
+        }
+      }
+
+      // anything beyond this ring is at least a full ring of cells away
+      if (best.size() == count && distance(latitude, longitude, best.peek()) <= bound(latitude,
+          ring)) {
+        break;
+      }
+    }
+
+    var result = new ArrayList<ZipcodeData>(best);
+    result.sort(Comparator.comparingDouble(s -> distance(latitude, longitude, s)));
+    return result;
+  }
+
+  /**
+   * Returns a lower bound on the distance from a point to any cell outside the given ring.
+   *
+   * @param  latitude the latitude of the point
+   * @param  ring     the ring just visited
+   *
+   * @return          the distance in kilometers
+   */
+  private double bound(double latitude, int ring) {
+
+    var cos = Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + (ring + 1) * CELL, 90)));
+    return ring * KM_PER_CELL * cos;
+  }
+
+  /**
+   * Returns the great-circle distance between a point and a record.
+   *
+   * @param  latitude  the latitude of the point
+   * @param  longitude the longitude of the point
+   * @param  rec       the record
+   *
+   * @return           the distance in kilometers
+   */
+  static double distance(double latitude, double longitude, ZipcodeData rec) {
+
+    var lat1 = Math.toRadians(latitude);
+    var lat2 = Math.toRadians(rec.latitude);
+    var sinLat = Math.sin((lat2 - lat1) / 2);
+    var sinLon = Math.sin(Math.toRadians(rec.longitude - longitude) / 2);
+    var a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * Returns the position of the given cell in {@link #cells}.
+   *
+   * @param  row    the cell row
+   * @param  column the cell column
+   *
+   * @return        the cell position; -1 if the cell is empty or off the grid
+   */
+  private int find(int row, int column) {
+
+    if (row < minRow || row > maxRow || column < minColumn || column > maxColumn) {
+      return -1;
+    }
+
+    var index = Arrays.binarySearch(cells, row * COLUMNS + column);
+    return (index < 0) ? -1 : index;
+  }
+
+  /**
+   * Returns the grid cell holding the given point.
+   */
+  private static int cell(double latitude, double longitude) {
+
+    return row(latitude) * COLUMNS + column(longitude);
+  }
+
+  /**
+   * Returns the grid row holding the given latitude.
+   */
+  private static int row(double latitude) {
+
+    return (int) Math.floor((latitude + 90) / CELL);
+  }
+
+  /**
+   * Returns the grid column holding the given longitude.
+   */
+  private static int column(double longitude) {
+
+    return (int) Math.floor((longitude + 180) / CELL);
+  }
+}
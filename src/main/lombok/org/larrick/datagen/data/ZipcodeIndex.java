@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Immutable secondary index from a key, such as a state or an area code, to the Zip code records
+ * that have it. Each group of records is sorted by zip code and carries its own alias table, so a
+ * population-weighted draw within a group costs the same as one over the whole data set. The keys
+ * themselves can also be drawn, weighted by the total population of their groups.
+ */
+final class ZipcodeIndex {
+
+  /**
+   * The records of a single key.
+   */
+  static final class Group {
+
+    private final List<ZipcodeData> records;
+    private final ZipcodeData[]     weighted;
+    private final AliasTable        sampler;
+    private final long              population;
+
+    /**
+     * Builds a group and its alias table.
+     *
+     * @param records the records of the group, sorted by zip code
+     */
+    private Group(ZipcodeData[] records) {
+
+      this.records = Collections.unmodifiableList(Arrays.asList(records));
+
+      weighted = Arrays.stream(records).filter(s -> s.population > 0)
+          .toArray(ZipcodeData[]::new);
+      var weights = new double[weighted.length];
+      var total = 0L;
+      for (var i = 0; i < weighted.length; i++) {
+        weights[i] = weighted[i].population;
+        total += weighted[i].population;
+      }
+      population = total;
+      sampler = (weighted.length == 0) ? null : new AliasTable(weights);
+    }
+
+    /**
+     * Returns the records of the group, sorted by zip code.
+     *
+     * @return an unmodifiable list of the records
+     */
+    List<ZipcodeData> records() {
+
+      return records;
+    }
+
+    /**
+     * Returns the total population of the records of the group.
+     *
+     * @return the population
+     */
+    long population() {
+
+      return population;
+    }
+
+    /**
+     * Returns a random record of the group, weighted by population.
+     *
+     * @param  random the source of randomness
+     *
+     * @return        a record; null if no record of the group has a population
+     */
+    ZipcodeData sample(Random random) {
+
+      return (sampler == null) ? null : weighted[sampler.next(random)];
+    }
+  }
+
+  private final Map<String, Group> groups;
+
+  /*
+   * Keys with a population, sorted, and the alias table used to draw them weighted by population.
+   */
+  private final String[]           keys;
+  private final AliasTable         keySampler;
+
+  /**
+   * Builds the index over the given records.
+   *
+   * @param records the records, sorted by zip code
+   * @param keyOf   the keys of a record; a record may have none or several
+   */
+  ZipcodeIndex(ZipcodeData[] records, Function<ZipcodeData, List<String>> keyOf) {
+
+    var lists = new HashMap<String, List<ZipcodeData>>();
+    for (var rec : records) {
+      for (var key : keyOf.apply(rec)) {
+        var list = lists.computeIfAbsent(key, k -> new ArrayList<ZipcodeData>());
+        // a record lists the same key once
+        if (list.isEmpty() || list.get(list.size() - 1) != rec) {
+          list.add(rec);
+        }
+      }
+    }
+
+    var map = new HashMap<String, Group>(lists.size() * 4 / 3 + 1);
+    lists.forEach((key, list) -> map.put(key, new Group(list.toArray(new ZipcodeData[0]))));
+    groups = map;
+
+    keys = map.entrySet().stream().filter(e -> e.getValue().population > 0)
+        .map(Map.Entry::getKey).sorted().toArray(String[]::new);
+    var weights = new double[keys.length];
+    for (var i = 0; i < weights.length; i++) {
+      weights[i] = map.get(keys[i]).population;
+    }
+    keySampler = (weights.length == 0) ? null : new AliasTable(weights);
+  }
+
+  /**
+   * Returns the group of the given key.
+   *
+   * @param  key the key to look up
+   *
+   * @return     the group; null if no record has the key
+   */
+  Group get(String key) {
+
+    return (key == null) ? null : groups.get(key);
+  }
+
+  /**
+   * Returns the records that have the given key.
+   *
+   * @param  key the key to look up
+   *
+   * @return     an unmodifiable list of the records, sorted by zip code; empty if none
+   */
+  List<ZipcodeData> records(String key) {
+
+    var group = get(key);
+    return (group == null) ? List.of() : group.records;
+  }
+
+  /**
+   * Returns a random record that has the given key, weighted by population.
+   *
+   * @param  key    the key to look up
+   * @param  random the source of randomness
+   *
+   * @return        a record; null if no record with the key has a population
+   */
+  ZipcodeData sample(String key, Random random) {
+
+    var group = get(key);
+    return (group == null) ? null : group.sample(random);
+  }
+
+  /**
+   * Returns the total population of the records that have the given key.
+   *
+   * @param  key the key to look up
+   *
+   * @return     the population; 0 if no record has the key
+   */
+  long population(String key) {
+
+    var group = get(key);
+    return (group == null) ? 0 : group.population;
+  }
+
+  /**
+   * Returns a random key, weighted by the total population of its records.
+   *
+   * @param  random the source of randomness
+   *
+   * @return        a key; null if no record has a population
+   */
+  String sampleKey(Random random) {
+
+    return (keySampler == null) ? null : keys[keySampler.next(random)];
+  }
+
+  /**
+   * Returns the key of a county, which is only unique within its state.
+   *
+   * @param  state  the state
+   * @param  county the county
+   *
+   * @return        the key of the county; null if either value is null
+   */
+  static String countyKey(String state, String county) {
+
+    return (state == null || county == null) ? null : state + '|' + county;
+  }
+
+  /**
+   * Returns a key list holding the given value.
+   *
+   * @param  value the single key; may be null
+   *
+   * @return       a list of the key; empty if the value is null
+   */
+  static List<String> key(String value) {
+
+    return (value == null) ? List.of() : List.of(value);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes binary snapshots of the clean Zip code data. A snapshot holds a
+ * {@link ZipcodeTable} behind a short header that records the length and CRC-32 of the
+ * {@code ZipcodeData.csv} file it was built from. {@link ZipcodeDataServer} memory-maps the
+ * snapshot at startup and falls back to parsing the CSV file when the snapshot is missing,
+ * unreadable or does not match the CSV file. The check compares content, not timestamps, which
+ * reproducible builds and jar time zones make meaningless: in a jar file the CRC-32 comes from the
+ * jar directory without reading the data, elsewhere the CSV file is checksummed but not parsed.
+ * <p>
+ * Loading a snapshot saves parsing and validating the CSV text, not building the lookup structures.
+ * {@link ZipcodeTable#read(ByteBuffer)} copies the mapped columns into heap arrays, and
+ * {@link ZipcodeDataset} then builds its records, indexes and grid from them as it would from the
+ * CSV records. Startup is faster than from the CSV file, but not proportionally to the file sizes.
+ * <p>
+ * Snapshots are built at build time by running this class:
+ *
+ * <pre>
+ * java org.larrick.datagen.data.ZipcodeSnapshot target/classes/ZipcodeData.snapshot
+ * </pre>
+ */
+public final class ZipcodeSnapshot {
+
+  /**
+   * System property naming a snapshot file to use in place of the classpath resource.
+   */
+  public static final String SNAPSHOT_PROPERTY = "org.larrick.datagen.zipcodeSnapshot";
+
+  /**
+   * The name of the snapshot classpath resource.
+   */
+  static final String        SNAPSHOT          = "ZipcodeData.snapshot";
+
+  private static final int   MAGIC             = 0x5A495053;                  // "ZIPS"
+  private static final int   VERSION           = 3;
+  private static final int   HEADER            = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private ZipcodeSnapshot() {}
+
+  /**
+   * Builds a snapshot of the clean Zip code data from the CSV file.
+   *
+   * @param  args        the path of the snapshot file to write
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+
+    if (args.length != 1) {
+      System.err.println("Usage: ZipcodeSnapshot <snapshot file>");
+      System.exit(1);
+    }
+
+    var loader = ZipcodeSnapshot.class.getClassLoader();
+    var stamp = sourceStamp(loader);
+    if (stamp == null) {
+      throw new IllegalArgumentException(
+          "Cannot access file \"" + ZipcodeDataServer.DATAFILE + "\"");
+    }
+
+    var table = ZipcodeDataServer.instanceCsvData().toTable();
+    write(table, stamp, Paths.get(args[0]));
+  }
+
+  /**
+   * Writes the given table to a snapshot file.
+   *
+   * @param  table       the table to write
+   * @param  stamp       the length and CRC-32 of the source CSV file
+   * @param  path        the snapshot file
+   *
+   * @throws IOException if the file cannot be written
+   */
+  static void write(ZipcodeTable table, long[] stamp, Path path) throws IOException {
+
+    var buffer = ByteBuffer.allocate(HEADER + table.byteSize()).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(stamp[0]).putLong(stamp[1]);
+    table.write(buffer);
+    buffer.flip();
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Loads the snapshot, if one is available and current.
+   *
+   * @param  loader the class loader used to find the snapshot and CSV resources
+   *
+   * @return        the snapshot table; null if there is no usable snapshot
+   */
+  static ZipcodeTable load(ClassLoader loader) {
+
+    try {
+      var buffer = map(loader);
+      if (buffer == null) {
+        return null;
+      }
+
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        System.err.println("ZipcodeSnapshot.load(): unrecognized snapshot format");
+        return null;
+      }
+
+      var length = buffer.getLong();
+      var crc = buffer.getLong();
+      var stamp = sourceStamp(loader);
+      if (stamp != null && (stamp[0] != length || stamp[1] != crc)) {
+        System.err.println("ZipcodeSnapshot.load(): snapshot is stale; reading \""
+            + ZipcodeDataServer.DATAFILE + "\"");
+        return null;
+      }
+
+      return ZipcodeTable.read(buffer);
+    } catch (IOException | URISyntaxException | BufferUnderflowException exc) {
+      System.err.println("ZipcodeSnapshot.load(): " + exc.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Maps the snapshot into memory. A snapshot packed in a jar file cannot be mapped and is read
+   * into the heap instead.
+   *
+   * @param  loader             the class loader used to find the snapshot resource
+   *
+   * @return                    a little-endian buffer of the snapshot; null if there is none
+   *
+   * @throws IOException        if the snapshot cannot be read
+   * @throws URISyntaxException if the snapshot location is malformed
+   */
+  private static ByteBuffer map(ClassLoader loader) throws IOException, URISyntaxException {
+
+    Path path = null;
+    var property = System.getProperty(SNAPSHOT_PROPERTY);
+    if (property != null) {
+      path = Paths.get(property);
+    } else {
+      var url = loader.getResource(SNAPSHOT);
+      if (url == null) {
+        return null;
+      }
+      if (!"file".equals(url.getProtocol())) {
+        try (var in = url.openStream()) {
+          return ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+      }
+      path = Paths.get(url.toURI());
+    }
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  /**
+   * Returns the length and CRC-32 of the CSV data file. For a jar entry both are read from the jar
+   * directory; otherwise the file is read once through a checksum.
+   *
+   * @param  loader      the class loader used to find the CSV resource
+   *
+   * @return             the length and CRC-32; null if the file cannot be found
+   *
+   * @throws IOException if the file cannot be read
+   */
+  private static long[] sourceStamp(ClassLoader loader) throws IOException {
+
+    var url = loader.getResource(ZipcodeDataServer.DATAFILE);
+    if (url == null) {
+      return null;
+    }
+
+    var connection = url.openConnection();
+    if (connection instanceof JarURLConnection) {
+      var entry = ((JarURLConnection) connection).getJarEntry();
+      if (entry.getSize() >= 0 && entry.getCrc() >= 0) {
+        return new long[] { entry.getSize(), entry.getCrc() };
+      }
+    }
+
+    var crc = new CRC32();
+    var length = 0L;
+    try (var in = connection.getInputStream()) {
+      var bytes = new byte[8192];
+      for (int n; (n = in.read(bytes)) > 0; length += n) {
+        crc.update(bytes, 0, n);
+      }
+    }
+    return new long[] { length, crc.getValue() };
+  }
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2018-2021 Bradley Larrick. All rights reserved.
+ * Licensed under the Apache License v2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+
+package org.larrick.datagen.data;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compact, column oriented store of {@link ZipcodeData} records. ZIP codes are held as sorted
+ * {@code int} values and every other field lives in a primitive array indexed by the position of
+ * its ZIP code. City, county, state, timezone and the other repeated strings are stored once in a
+ * shared {@link StringDictionary}, and the list fields are flattened into code arrays with start
+ * offsets.
+ * <p>
+ * {@link #get(String)} and {@link #stream()} return freshly built {@code ZipcodeData} views of the
+ * columns; use the index based accessors to scan the data without building records.
+ */
+public final class ZipcodeTable {
+
+  private final StringDictionary dictionary;
+
+  private final int[]            zip;
+  private final int[]            type;
+  private final byte[]           decommissioned;
+  private final boolean[]        poBox;
+  private final int[]            city;
+  private final int[]            state;
+  private final int[]            county;
+  private final int[]            timezone;
+  private final int[]            region;
+  private final int[]            country;
+  private final double[]         latitude;
+  private final double[]         longitude;
+  private final int[]            population;
+
+  /*
+   * List columns: the values for record i are codes[start[i]] up to codes[start[i + 1]].
+   */
+  private final int[]            acceptableStart;
+  private final int[]            acceptableCities;
+  private final int[]            unacceptableStart;
+  private final int[]            unacceptableCities;
+  private final int[]            areacodeStart;
+  private final int[]            areacodes;
+
+  /**
+   * Builds a table from the given records.
+   *
+   * @param  records                  the records to store
+   *
+   * @return                          a new table
+   *
+   * @throws IllegalArgumentException if a record has a ZIP code that is not five ASCII digits
+   */
+  public static ZipcodeTable of(Collection<ZipcodeData> records) {
+
+    var sorted = records.toArray(new ZipcodeData[0]);
+    Arrays.sort(sorted);
+    return new ZipcodeTable(sorted);
+  }
+
+  /**
+   * Builds the columns from the given records, which must be sorted by ZIP code.
+   *
+   * @param records the sorted records
+   */
+  private ZipcodeTable(ZipcodeData[] records) {
+
+    var size = records.length;
+    dictionary = new StringDictionary(size / 4);
+
+    zip = new int[size];
+    type = new int[size];
+    decommissioned = new byte[size];
+    poBox = new boolean[size];
+    city = new int[size];
+    state = new int[size];
+    county = new int[size];
+    timezone = new int[size];
+    region = new int[size];
+    country = new int[size];
+    latitude = new double[size];
+    longitude = new double[size];
+    population = new int[size];
+
+    acceptableStart = new int[size + 1];
+    unacceptableStart = new int[size + 1];
+    areacodeStart = new int[size + 1];
+    var acceptable = new ListColumn(size);
+    var unacceptable = new ListColumn(size);
+    var acodes = new ListColumn(size);
+
+    for (var i = 0; i < size; i++) {
+      var rec = records[i];
+      zip[i] = toInt(rec.zipcode);
+      type[i] = dictionary.encode(rec.type);
+      decommissioned[i] = (byte) rec.decommissioned;
+      poBox[i] = rec.poBox;
+      city[i] = dictionary.encode(rec.city);
+      state[i] = dictionary.encode(rec.state);
+      county[i] = dictionary.encode(rec.county);
+      timezone[i] = dictionary.encode(rec.timezone);
+      region[i] = dictionary.encode(rec.region);
+      country[i] = dictionary.encode(rec.country);
+      latitude[i] = rec.latitude;
+      longitude[i] = rec.longitude;
+      population[i] = rec.population;
+
+      acceptableStart[i] = acceptable.add(rec.acceptableCities);
+      unacceptableStart[i] = unacceptable.add(rec.unacceptableCities);
+      areacodeStart[i] = acodes.add(rec.areacodes);
+    }
+    acceptableStart[size] = acceptable.size;
+    unacceptableStart[size] = unacceptable.size;
+    areacodeStart[size] = acodes.size;
+
+    acceptableCities = acceptable.toArray();
+    unacceptableCities = unacceptable.toArray();
+    areacodes = acodes.toArray();
+  }
+
+  /**
+   * Reads the columns written by {@link #write(ByteBuffer)} from the given buffer.
+   *
+   * @param in the buffer positioned at the start of the table
+   */
+  private ZipcodeTable(ByteBuffer in) {
+
+    dictionary = StringDictionary.read(in);
+
+    zip = readInts(in);
+    type = readInts(in);
+    decommissioned = new byte[in.getInt()];
+    in.get(decommissioned);
+    var flags = new byte[in.getInt()];
+    in.get(flags);
+    poBox = new boolean[flags.length];
+    for (var i = 0; i < flags.length; i++) {
+      poBox[i] = flags[i] != 0;
+    }
+    city = readInts(in);
+    state = readInts(in);
+    county = readInts(in);
+    timezone = readInts(in);
+    region = readInts(in);
+    country = readInts(in);
+    latitude = readDoubles(in);
+    longitude = readDoubles(in);
+    population = readInts(in);
+    acceptableStart = readInts(in);
+    acceptableCities = readInts(in);
+    unacceptableStart = readInts(in);
+    unacceptableCities = readInts(in);
+    areacodeStart = readInts(in);
+    areacodes = readInts(in);
+  }
+
+  /**
+   * Reads a table from the given buffer. The buffer must be positioned at data written by
+   * {@link #write(ByteBuffer)} and use the same byte order. The columns and dictionary are copied
+   * into heap arrays, so the table does not keep a mapped buffer alive.
+   *
+   * @param  in                       the buffer to read
+   *
+   * @return                          the table read from the buffer
+   *
+   * @throws BufferUnderflowException if the buffer is truncated
+   */
+  static ZipcodeTable read(ByteBuffer in) {
+
+    return new ZipcodeTable(in);
+  }
+
+  /**
+   * Writes the dictionary and all columns of this table to the given buffer.
+   *
+   * @param  out                     the buffer to write
+   *
+   * @throws BufferOverflowException if the buffer is smaller than {@link #byteSize()}
+   */
+  void write(ByteBuffer out) {
+
+    dictionary.write(out);
+
+    writeInts(out, zip);
+    writeInts(out, type);
+    out.putInt(decommissioned.length);
+    out.put(decommissioned);
+    out.putInt(poBox.length);
+    for (var flag : poBox) {
+      out.put((byte) (flag ? 1 : 0));
+    }
+    writeInts(out, city);
+    writeInts(out, state);
+    writeInts(out, county);
+    writeInts(out, timezone);
+    writeInts(out, region);
+    writeInts(out, country);
+    writeDoubles(out, latitude);
+    writeDoubles(out, longitude);
+    writeInts(out, population);
+    writeInts(out, acceptableStart);
+    writeInts(out, acceptableCities);
+    writeInts(out, unacceptableStart);
+    writeInts(out, unacceptableCities);
+    writeInts(out, areacodeStart);
+    writeInts(out, areacodes);
+  }
+
+  /**
+   * Returns the number of bytes {@link #write(ByteBuffer)} needs for this table.
+   *
+   * @return the size of the binary form of the table
+   */
+  int byteSize() {
+
+    var bytes = dictionary.byteSize();
+
+    // nine int columns and two byte and two double columns sized by record, then the list columns
+    var size = size();
+    bytes += 9 * (Integer.BYTES + size * Integer.BYTES);
+    bytes += 2 * (Integer.BYTES + size);
+    bytes += 2 * (Integer.BYTES + size * Double.BYTES);
+    bytes += 3 * (Integer.BYTES + (size + 1) * Integer.BYTES);
+    bytes += 3 * Integer.BYTES
+        + (acceptableCities.length + unacceptableCities.length + areacodes.length) * Integer.BYTES;
+    return bytes;
+  }
+
+  /**
+   * Returns the number of records in the table.
+   *
+   * @return the number of records
+   */
+  public int size() {
+
+    return zip.length;
+  }
+
+  /**
+   * Returns the dictionary holding the string values of the table.
+   *
+   * @return the string dictionary
+   */
+  public StringDictionary dictionary() {
+
+    return dictionary;
+  }
+
+  /**
+   * Returns the position of the given ZIP code in the table.
+   *
+   * @param  zipcode the ZIP code to find
+   *
+   * @return         the index of the ZIP code; -1 if not found or not five ASCII digits
+   */
+  public int indexOf(String zipcode) {
+
+    var number = ZipcodeDataset.number(zipcode);
+    return (number < 0) ? -1 : indexOf(number);
+  }
+
+  /**
+   * Returns the position of the given numeric ZIP code in the table.
+   *
+   * @param  zipcode the ZIP code to find
+   *
+   * @return         the index of the ZIP code; -1 if not found
+   */
+  public int indexOf(int zipcode) {
+
+    var index = Arrays.binarySearch(zip, zipcode);
+    return (index < 0) ? -1 : index;
+  }
+
+  /**
+   * Returns a view of the record for the given ZIP code.
+   *
+   * @param  zipcode the ZIP code to return
+   *
+   * @return         the data for the given ZIP code; null if not found
+   */
+  public ZipcodeData get(String zipcode) {
+
+    var index = indexOf(zipcode);
+    return (index < 0) ? null : record(index);
+  }
+
+  /**
+   * Returns a {@link Stream} of views of all records, in ZIP code order.
+   *
+   * @return a {@link Stream} of the ZIP code data
+   */
+  public Stream<ZipcodeData> stream() {
+
+    return IntStream.range(0, size()).mapToObj(this::record);
+  }
+
+  /**
+   * Builds a {@link ZipcodeData} view of the record at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       a new record holding the values at the index
+   */
+  public ZipcodeData record(int index) {
+
+    var rec = new ZipcodeData();
+    rec.zipcode = zipcode(index);
+    rec.type = dictionary.decode(type[index]);
+    rec.decommissioned = decommissioned[index];
+    rec.poBox = poBox[index];
+    rec.city = dictionary.decode(city[index]);
+    rec.acceptableCities = decode(acceptableStart, acceptableCities, index);
+    rec.unacceptableCities = decode(unacceptableStart, unacceptableCities, index);
+    rec.state = dictionary.decode(state[index]);
+    rec.county = dictionary.decode(county[index]);
+    rec.timezone = dictionary.decode(timezone[index]);
+    rec.areacodes = decode(areacodeStart, areacodes, index);
+    rec.region = dictionary.decode(region[index]);
+    rec.country = dictionary.decode(country[index]);
+    rec.latitude = latitude[index];
+    rec.longitude = longitude[index];
+    rec.population = population[index];
+    return rec;
+  }
+
+  /**
+   * Returns the ZIP code at the given index as a five digit string.
+   *
+   * @param  index the record index
+   *
+   * @return       the ZIP code
+   */
+  public String zipcode(int index) {
+
+    return toString(zip[index]);
+  }
+
+  /**
+   * Returns the numeric ZIP code at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the ZIP code
+   */
+  public int zip(int index) {
+
+    return zip[index];
+  }
+
+  /**
+   * Returns the city at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the city
+   */
+  public String city(int index) {
+
+    return dictionary.decode(city[index]);
+  }
+
+  /**
+   * Returns the state at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the state
+   */
+  public String state(int index) {
+
+    return dictionary.decode(state[index]);
+  }
+
+  /**
+   * Returns the county at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the county
+   */
+  public String county(int index) {
+
+    return dictionary.decode(county[index]);
+  }
+
+  /**
+   * Returns the timezone at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the timezone
+   */
+  public String timezone(int index) {
+
+    return dictionary.decode(timezone[index]);
+  }
+
+  /**
+   * Returns the latitude at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the latitude
+   */
+  public double latitude(int index) {
+
+    return latitude[index];
+  }
+
+  /**
+   * Returns the longitude at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the longitude
+   */
+  public double longitude(int index) {
+
+    return longitude[index];
+  }
+
+  /**
+   * Returns the population at the given index.
+   *
+   * @param  index the record index
+   *
+   * @return       the population
+   */
+  public int population(int index) {
+
+    return population[index];
+  }
+
+  /**
+   * Returns <b>{@code true}</b> if the record at the given index is for PO Boxes.
+   *
+   * @param  index the record index
+   *
+   * @return       <b>{@code true}</b> if a PO Box ZIP code
+   */
+  public boolean poBox(int index) {
+
+    return poBox[index];
+  }
+
+  /**
+   * Converts a five digit ZIP code string to its numeric value.
+   *
+   * @param  zipcode                  the ZIP code
+   *
+   * @return                          the numeric ZIP code
+   *
+   * @throws IllegalArgumentException if the ZIP code is not five ASCII digits
+   */
+  static int toInt(String zipcode) {
+
+    var number = ZipcodeDataset.number(zipcode);
+    if (number < 0) {
+      throw new IllegalArgumentException("Invalid ZIP code: " + zipcode);
+    }
+    return number;
+  }
+
+  /**
+   * Converts a numeric ZIP code to a zero-padded five digit string.
+   *
+   * @param  zip the numeric ZIP code
+   *
+   * @return     the ZIP code string
+   */
+  static String toString(int zip) {
+
+    var chars = new char[5];
+    for (var i = 4; i >= 0; i--) {
+      chars[i] = (char) ('0' + zip % 10);
+      zip /= 10;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Reads a length-prefixed {@code int} column from the buffer.
+   */
+  private static int[] readInts(ByteBuffer in) {
+
+    var values = new int[in.getInt()];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + values.length * Integer.BYTES);
+    return values;
+  }
+
+  /**
+   * Reads a length-prefixed {@code double} column from the buffer.
+   */
+  private static double[] readDoubles(ByteBuffer in) {
+
+    var values = new double[in.getInt()];
+    in.asDoubleBuffer().get(values);
+    in.position(in.position() + values.length * Double.BYTES);
+    return values;
+  }
+
+  /**
+   * Writes an {@code int} column to the buffer, prefixed by its length.
+   */
+  private static void writeInts(ByteBuffer out, int[] values) {
+
+    out.putInt(values.length);
+    out.asIntBuffer().put(values);
+    out.position(out.position() + values.length * Integer.BYTES);
+  }
+
+  /**
+   * Writes a {@code double} column to the buffer, prefixed by its length.
+   */
+  private static void writeDoubles(ByteBuffer out, double[] values) {
+
+    out.putInt(values.length);
+    out.asDoubleBuffer().put(values);
+    out.position(out.position() + values.length * Double.BYTES);
+  }
+
+  /**
+   * Decodes the list of values for the given index from a list column.
+   *
+   * @param  start the start offsets of the column
+   * @param  codes the codes of the column
+   * @param  index the record index
+   *
+   * @return       a new list of the decoded values
+   */
+  private List<String> decode(int[] start, int[] codes, int index) {
+
+    var list = new ArrayList<String>(start[index + 1] - start[index]);
+    for (var i = start[index]; i < start[index + 1]; i++) {
+      list.add(dictionary.decode(codes[i]));
+    }
+    return list;
+  }
+
+  /**
+   * Growable buffer of codes used while building a list column.
+   */
+  private final class ListColumn {
+
+    int[] codes;
+    int   size = 0;
+
+    ListColumn(int capacity) {
+      codes = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Appends the values of the given list and returns the offset of the first one.
+     */
+    int add(List<String> values) {
+
+      var start = size;
+      if (values != null) {
+        for (var value : values) {
+          if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+          }
+          codes[size++] = dictionary.encode(value);
+        }
+      }
+      return start;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(codes, size);
+    }
+  }
+}